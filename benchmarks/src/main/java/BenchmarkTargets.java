@@ -0,0 +1,62 @@
+import hill.bench.Targets;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Gives the benchmarks in {@code hill.bench} access to the package-private cipher classes.
+ */
+public class BenchmarkTargets implements Targets {
+
+    @Override
+    public Kernel kernel(int[][] key, int radix, String implementation) {
+        System.setProperty("hill.kernel", implementation);
+        BlockKernel kernel = BlockKernel.forKey(key, radix);
+        return kernel::apply;
+    }
+
+    @Override
+    public long tokenize(ByteBuffer text) throws IOException {
+        NumberTokenizer tokenizer = new NumberTokenizer(text.duplicate());
+        long sum = 0;
+        int number;
+        while ((number = tokenizer.next()) != -1) sum += number;
+        return sum;
+    }
+
+    @Override
+    public Padding padding(int[][] key, int radix) {
+        HillKey hillKey = HillKey.of(radix, key);
+        HillCipherEngine cipherEngine = new HillCipherEngine(hillKey);
+        HillDecipherEngine decipherEngine = new HillDecipherEngine(hillKey.inverse());
+        NumberWriter discard = new NumberWriter(OutputStream.nullOutputStream());
+        return new Padding() {
+            @Override
+            public void addPadding(int[] lastBlock, long totalNumRead) throws IOException {
+                cipherEngine.addPadding(discard, lastBlock, totalNumRead);
+                discard.flush();
+            }
+
+            @Override
+            public int removePadding(int[] lastBlock) {
+                return decipherEngine.removePadding(lastBlock, null);
+            }
+        };
+    }
+
+    @Override
+    public int symbolWidth(int radix) {
+        return BinaryCipherFormat.symbolWidth(radix);
+    }
+
+    @Override
+    public boolean isInvertible(int[][] matrix, int radix) {
+        return ModularMatrix.isInvertible(matrix, radix);
+    }
+
+    @Override
+    public int[][] inverse(int[][] matrix, int radix) {
+        return ModularMatrix.inverse(matrix, radix);
+    }
+}
@@ -0,0 +1,98 @@
+package hill.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+
+/**
+ * encryptArray/decryptArray as done by the engines: one kernel call per batch of blocks.
+ * One operation is one block, so the primary scores are blocks per second. The
+ * secondary {@code megabytes} scores count the blocks as packed in the binary cipher
+ * format, so they are MB per second and comparable across radixes and block sizes.
+ *
+ * Radixes above 2^16 and blocks of 64 cover the range of the wide kernel; keys whose
+ * rows could overflow an int get it whatever {@code kernel} asks for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KernelBenchmark {
+    static final int BLOCKS = 4096;
+
+    @Param({"26", "256", "65537", "2147483647"})
+    int radix;
+
+    @Param({"2", "3", "8", "64"})
+    int blocksize;
+
+    @Param({"flat", "table", "gemm", "wide"})
+    String kernel;
+
+    private Targets.Kernel encryptKernel;
+    private Targets.Kernel decryptKernel;
+    private int[] plain;
+    private int[] cipher;
+    private int[] out;
+    private long batchBytes;
+
+    /** Bytes of binary cipher text processed, reported per second next to the blocks. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+
+        public double megabytes() {
+            return bytes / 1e6;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Targets targets = Targets.load();
+        SplittableRandom random = new SplittableRandom(42);
+        int[][] key = Keys.randomInvertibleKey(targets, random, radix, blocksize);
+        encryptKernel = targets.kernel(key, radix, kernel);
+        decryptKernel = targets.kernel(targets.inverse(key, radix), radix, kernel);
+        plain = new int[BLOCKS * blocksize];
+        for (int i = 0; i < plain.length; i++) plain[i] = random.nextInt(radix);
+        cipher = new int[plain.length];
+        encryptKernel.apply(plain, cipher, BLOCKS);
+        out = new int[plain.length];
+        batchBytes = (long) plain.length * targets.symbolWidth(radix);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public int[] encryptArray(Throughput throughput) {
+        encryptKernel.apply(plain, out, BLOCKS);
+        throughput.bytes += batchBytes;
+        return out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BLOCKS)
+    public int[] decryptArray(Throughput throughput) {
+        decryptKernel.apply(cipher, out, BLOCKS);
+        throughput.bytes += batchBytes;
+        return out;
+    }
+}
@@ -0,0 +1,95 @@
+package hill.bench;
+
+import org.jscience.mathematics.number.LargeInteger;
+import org.jscience.mathematics.number.ModuloInteger;
+import org.jscience.mathematics.vector.DenseMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+
+/**
+ * Key generation as done by HillKeys, in keys (or checked candidates) per second.
+ *
+ * {@code jscienceInverse} is the DenseMatrix&lt;ModuloInteger&gt; check HillKeys used
+ * before ModularMatrix, kept as a baseline. JScience only inverts matrices whose
+ * elimination pivots are units, so it gets a key it is known to accept.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyGenerationBenchmark {
+
+    @Param({"26", "256"})
+    int radix;
+
+    @Param({"3", "8"})
+    int blocksize;
+
+    private Targets targets;
+    private SplittableRandom random;
+    private int[][] candidate;
+    private int[][] key;
+    private int[][] jscienceKey;
+
+    @Setup
+    public void setUp() {
+        targets = Targets.load();
+        random = new SplittableRandom(42);
+        candidate = Keys.randomMatrix(random, radix, blocksize);
+        key = Keys.randomInvertibleKey(targets, random, radix, blocksize);
+        do {
+            jscienceKey = Keys.randomInvertibleKey(targets, random, radix, blocksize);
+        } while (!jscienceInverts(jscienceKey));
+    }
+
+    @Benchmark
+    public int[][] generateKeyPair() {
+        return targets.inverse(Keys.randomInvertibleKey(targets, random, radix, blocksize), radix);
+    }
+
+    @Benchmark
+    public boolean isInvertible() {
+        return targets.isInvertible(candidate, radix);
+    }
+
+    @Benchmark
+    public int[][] inverse() {
+        return targets.inverse(key, radix);
+    }
+
+    @Benchmark
+    public Object jscienceInverse() {
+        return jscienceInverse(jscienceKey);
+    }
+
+    private boolean jscienceInverts(int[][] matrix) {
+        try {
+            jscienceInverse(matrix);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private DenseMatrix<ModuloInteger> jscienceInverse(int[][] matrix) {
+        ModuloInteger.setModulus(LargeInteger.valueOf(radix));
+        ModuloInteger[][] values = new ModuloInteger[blocksize][blocksize];
+        for (int i = 0; i < blocksize; i++) {
+            for (int j = 0; j < blocksize; j++) {
+                values[i][j] = ModuloInteger.valueOf(LargeInteger.valueOf(matrix[i][j]));
+            }
+        }
+        return DenseMatrix.valueOf(values).inverse();
+    }
+}
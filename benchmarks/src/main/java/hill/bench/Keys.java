@@ -0,0 +1,28 @@
+package hill.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random invertible keys for the benchmark states.
+ */
+final class Keys {
+
+    private Keys() {
+    }
+
+    static int[][] randomMatrix(SplittableRandom random, int radix, int size) {
+        int[][] matrix = new int[size][size];
+        for (int[] row : matrix) {
+            for (int col = 0; col < size; col++) row[col] = random.nextInt(radix);
+        }
+        return matrix;
+    }
+
+    static int[][] randomInvertibleKey(Targets targets, SplittableRandom random, int radix, int size) {
+        int[][] key;
+        do {
+            key = randomMatrix(random, radix, size);
+        } while (!targets.isInvertible(key, radix));
+        return key;
+    }
+}
@@ -0,0 +1,60 @@
+package hill.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+/**
+ * addPadding/removePadding of the final block, in final blocks per second.
+ * addPadding includes the random fill, the encryption and the formatting of the block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PaddingBenchmark {
+
+    @Param({"26", "256"})
+    int radix;
+
+    @Param({"3", "8"})
+    int blocksize;
+
+    private Targets.Padding padding;
+    private int[] lastBlock;
+    private int[] paddedBlock;
+    private long totalNumRead;
+
+    @Setup
+    public void setUp() {
+        Targets targets = Targets.load();
+        SplittableRandom random = new SplittableRandom(42);
+        padding = targets.padding(Keys.randomInvertibleKey(targets, random, radix, blocksize), radix);
+        lastBlock = new int[blocksize];
+        totalNumRead = 1000L * blocksize + blocksize / 2;
+        paddedBlock = new int[blocksize];
+        paddedBlock[blocksize - 1] = blocksize - blocksize / 2;
+    }
+
+    @Benchmark
+    public int[] addPadding() throws IOException {
+        padding.addPadding(lastBlock, totalNumRead);
+        return lastBlock;
+    }
+
+    @Benchmark
+    public int removePadding() {
+        return padding.removePadding(paddedBlock);
+    }
+}
@@ -0,0 +1,48 @@
+package hill.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The cipher classes live in the unnamed package, which JMH benchmarks cannot
+ * reference. They are reached through this interface instead, implemented by
+ * {@code BenchmarkTargets} in the unnamed package and loaded by name.
+ */
+public interface Targets {
+
+    static Targets load() {
+        try {
+            return (Targets) Class.forName("BenchmarkTargets").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("BenchmarkTargets is missing from the class path", e);
+        }
+    }
+
+    /** Creates a block kernel for the key, {@code implementation} being a {@code hill.kernel} value. */
+    Kernel kernel(int[][] key, int radix, String implementation);
+
+    /** Parses every number in the text with the streaming tokenizer and returns their sum. */
+    long tokenize(ByteBuffer text) throws IOException;
+
+    /** Creates the padding steps of the engines for the key. */
+    Padding padding(int[][] key, int radix);
+
+    /** Bytes per symbol in the binary cipher format. */
+    int symbolWidth(int radix);
+
+    boolean isInvertible(int[][] matrix, int radix);
+
+    int[][] inverse(int[][] matrix, int radix);
+
+    interface Kernel {
+        void apply(int[] in, int[] out, int blocks);
+    }
+
+    interface Padding {
+        /** Pads and encrypts the final block of a plaintext of {@code totalNumRead} numbers. */
+        void addPadding(int[] lastBlock, long totalNumRead) throws IOException;
+
+        /** Returns how many numbers of a decrypted final block are data. */
+        int removePadding(int[] lastBlock);
+    }
+}
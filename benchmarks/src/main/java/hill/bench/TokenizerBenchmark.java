@@ -0,0 +1,72 @@
+package hill.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Parsing of space separated plaintext/ciphertext numbers. Every operation parses
+ * exactly one MiB of text, so the scores are MiB per second.
+ *
+ * {@code regexPerByte} is the parsing loop the engines used before the streaming
+ * tokenizer, a regex check on a new String for every byte, kept as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TokenizerBenchmark {
+    static final int TEXT_SIZE = 1 << 20;
+
+    @Param({"26", "256"})
+    int radix;
+
+    private Targets targets;
+    private ByteBuffer text;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        targets = Targets.load();
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder sb = new StringBuilder(TEXT_SIZE + 8);
+        while (sb.length() < TEXT_SIZE) sb.append(random.nextInt(radix)).append(' ');
+        sb.setLength(TEXT_SIZE);
+        bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        bytes[bytes.length - 1] = ' ';
+        text = ByteBuffer.wrap(bytes);
+    }
+
+    @Benchmark
+    public long streamingTokenizer() throws IOException {
+        return targets.tokenize(text);
+    }
+
+    @Benchmark
+    public long regexPerByte() {
+        long sum = 0;
+        StringBuilder currentFullNumber = new StringBuilder();
+        for (byte b : bytes) {
+            if (String.valueOf((char) b).matches("\\s+")) {
+                if (currentFullNumber.length() > 0) sum += Integer.parseInt(currentFullNumber.toString());
+                currentFullNumber.setLength(0);
+            } else {
+                currentFullNumber.append((char) b);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,66 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks the Gauss-Jordan inverse against the defining product, including at
+ * the largest radix where the row operations need their long arithmetic.
+ */
+class ModularMatrixTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {26, 256, Integer.MAX_VALUE})
+    void inverseTimesKeyIsIdentity(int radix) {
+        SplittableRandom random = new SplittableRandom(radix);
+        for (int size : new int[]{1, 2, 3, 8, 16}) {
+            for (int trial = 0; trial < 20; trial++) {
+                int[][] key = randomMatrix(random, radix, size);
+                int[][] inverse = ModularMatrix.inverse(key, radix);
+                if (!ModularMatrix.isInvertible(key, radix)) {
+                    assertNull(inverse);
+                    continue;
+                }
+                assertNotNull(inverse);
+                assertArrayEquals(identity(size), ModularMatrix.multiply(inverse, key, radix));
+                assertArrayEquals(identity(size), ModularMatrix.multiply(key, inverse, radix));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {26, 256, Integer.MAX_VALUE})
+    void singularMatrixHasNoInverse(int radix) {
+        int[][] repeatedRow = {{1, 2, 3}, {4, 5, 6}, {1, 2, 3}};
+        assertFalse(ModularMatrix.isInvertible(repeatedRow, radix));
+        assertNull(ModularMatrix.inverse(repeatedRow, radix));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {26, 256})
+    void determinantSharingAFactorWithTheRadixHasNoInverse(int radix) {
+        // determinant 2, invertible over the rationals but not modulo an even radix
+        int[][] key = {{2, 0}, {0, 1}};
+        assertFalse(ModularMatrix.isInvertible(key, radix));
+        assertNull(ModularMatrix.inverse(key, radix));
+    }
+
+    private static int[][] randomMatrix(SplittableRandom random, int radix, int size) {
+        int[][] matrix = new int[size][size];
+        for (int[] row : matrix) {
+            for (int col = 0; col < size; col++) row[col] = random.nextInt(radix);
+        }
+        return matrix;
+    }
+
+    private static int[][] identity(int size) {
+        int[][] identity = new int[size][size];
+        for (int i = 0; i < size; i++) identity[i][i] = 1;
+        return identity;
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks the Barrett reduction of the wide kernel against {@code %}, and that
+ * its partial sums do not overflow between reductions.
+ */
+class WideKernelTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 26, 65537, Integer.MAX_VALUE})
+    void reduceMatchesRemainderAtTheBoundaries(int radix) {
+        WideKernel kernel = new WideKernel(new int[][]{{1}}, radix);
+        long r = radix;
+        long[] boundaries = {
+                0, 1, r - 1, r, r + 1, 2 * r - 1, 2 * r,
+                (r - 1) * (r - 1), (r - 1) * Integer.MAX_VALUE,
+                Long.MAX_VALUE / r * r - 1, Long.MAX_VALUE / r * r,
+                Long.MAX_VALUE - r, Long.MAX_VALUE - 1, Long.MAX_VALUE
+        };
+        for (long x : boundaries) assertEquals(x % r, kernel.reduce(x), "reduce(" + x + ")");
+
+        SplittableRandom random = new SplittableRandom(radix);
+        for (int i = 0; i < 100_000; i++) {
+            long x = random.nextLong(Long.MAX_VALUE);
+            assertEquals(x % r, kernel.reduce(x), "reduce(" + x + ")");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 26, 65537, Integer.MAX_VALUE})
+    void largestProductsDoNotOverflow(int radix) {
+        int size = 64;
+        int[][] key = new int[size][size];
+        for (int[] row : key) Arrays.fill(row, radix - 1);
+        int[] in = new int[size];
+        Arrays.fill(in, radix - 1);
+        int[] out = new int[size];
+        new WideKernel(key, radix).apply(in, 0, out, 0);
+
+        BigInteger largest = BigInteger.valueOf(radix - 1);
+        int expected = largest.multiply(largest).multiply(BigInteger.valueOf(size)).mod(BigInteger.valueOf(radix)).intValueExact();
+        int[] expectedBlock = new int[size];
+        Arrays.fill(expectedBlock, expected);
+        assertArrayEquals(expectedBlock, out);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {26, 65537, Integer.MAX_VALUE})
+    void decryptingWithTheInverseRestoresTheBlocks(int radix) {
+        int size = 64;
+        int blocks = 100;
+        SplittableRandom random = new SplittableRandom(radix);
+        int[][] key;
+        int[][] inverse;
+        do {
+            key = new int[size][size];
+            for (int[] row : key) {
+                for (int col = 0; col < size; col++) row[col] = random.nextInt(radix);
+            }
+            inverse = ModularMatrix.inverse(key, radix);
+        } while (inverse == null);
+
+        int[] plain = new int[blocks * size];
+        for (int i = 0; i < plain.length; i++) plain[i] = random.nextInt(radix);
+        int[] cipher = new int[plain.length];
+        int[] decrypted = new int[plain.length];
+        new WideKernel(key, radix).apply(plain, cipher, blocks);
+        new WideKernel(inverse, radix).apply(cipher, decrypted, blocks);
+        assertArrayEquals(plain, decrypted);
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Compact ciphertext container: a short header followed by every symbol packed,
+ * big-endian, into the fewest bytes that can hold the radix.
+ *
+ * <pre>
+ * "HILB" | version (1) | symbol width (1) | block size (2) | radix (4) | padding (2)
+ * </pre>
+ *
+ * The padding count is only known once the plaintext has been read, so it is
+ * patched into the header after the symbols have been written.
+ */
+final class BinaryCipherFormat {
+    static final byte[] MAGIC = {'H', 'I', 'L', 'B'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 14;
+    static final int PADDING_OFFSET = 12;
+
+    final int symbolWidth;
+    final int blocksize;
+    final int radix;
+    final int padding;
+
+    private BinaryCipherFormat(int symbolWidth, int blocksize, int radix, int padding) {
+        this.symbolWidth = symbolWidth;
+        this.blocksize = blocksize;
+        this.radix = radix;
+        this.padding = padding;
+    }
+
+    static int symbolWidth(int radix) {
+        if (radix <= 1 << 8) return 1;
+        if (radix <= 1 << 16) return 2;
+        return 4;
+    }
+
+    static void writeHeader(OutputStream out, int radix, int blocksize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put((byte) VERSION).put((byte) symbolWidth(radix))
+                .putShort((short) blocksize).putInt(radix).putShort((short) 0);
+        out.write(header.array());
+    }
+
+    static void writePadding(File cipherFile, int padding) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(cipherFile, "rw")) {
+            file.seek(PADDING_OFFSET);
+            file.writeShort(padding);
+        }
+    }
+
+    /**
+     * Reads the header at the start of the channel, or returns null when the
+     * file does not start with the binary magic and is decimal text.
+     */
+    static BinaryCipherFormat read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) { }
+        header.flip();
+        return read(header);
+    }
+
+    /**
+     * Reads the header at the position of the buffer, advancing past it, or returns
+     * null and leaves the buffer untouched when it does not start with the binary magic.
+     */
+    static BinaryCipherFormat read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE) return null;
+        ByteBuffer header = buffer.duplicate();
+        for (byte b : MAGIC) {
+            if (header.get() != b) return null;
+        }
+        int version = header.get();
+        if (version != VERSION) throw new IOException("Unsupported binary cipher file version " + version);
+        int symbolWidth = header.get();
+        int blocksize = header.getShort() & 0xFFFF;
+        int radix = header.getInt();
+        int padding = header.getShort() & 0xFFFF;
+        buffer.position(header.position());
+        return new BinaryCipherFormat(symbolWidth, blocksize, radix, padding);
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes numbers packed big-endian into a fixed number of bytes each,
+ * for the binary cipher format.
+ */
+class BinaryNumberWriter extends NumberWriter {
+    private final int symbolWidth;
+
+    BinaryNumberWriter(OutputStream out, int symbolWidth) {
+        super(out);
+        this.symbolWidth = symbolWidth;
+    }
+
+    @Override
+    void write(int number) throws IOException {
+        if (position > BUFFER_SIZE - 4) flush();
+        for (int shift = (symbolWidth - 1) * 8; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (number >>> shift);
+        }
+    }
+
+    @Override
+    NumberWriter newPartWriter(OutputStream partOut) {
+        return new BinaryNumberWriter(partOut, symbolWidth);
+    }
+
+    @Override
+    boolean separated() {
+        return false;
+    }
+}
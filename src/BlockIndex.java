@@ -0,0 +1,102 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Sparse sidecar index of a decimal cipher file, written next to it as
+ * {@code <cipherfile>.idx}. It maps every {@code interval}-th block to the byte
+ * offset its text starts at, so a range of blocks can be decrypted by seeking
+ * instead of tokenizing the file from the start.
+ *
+ * <pre>
+ * "HILX" | version (1) | block size (2) | interval (4) | blocks (8) | padding (2)
+ *        | cipher file length (8) | entries (4) | offset (8) * entries
+ * </pre>
+ *
+ * The cipher file length ties the index to the file it was written for.
+ * Binary cipher files have fixed width symbols and need no index.
+ */
+final class BlockIndex {
+    static final byte[] MAGIC = {'H', 'I', 'L', 'X'};
+    static final int VERSION = 1;
+
+    final int blocksize;
+    final int interval;
+    long blocks;
+    int padding;
+    long cipherLength;
+    private long[] offsets;
+    private int entries;
+
+    BlockIndex(int blocksize, int interval) {
+        if (interval < 1) throw new IllegalArgumentException("The index interval must be at least 1");
+        this.blocksize = blocksize;
+        this.interval = interval;
+        this.offsets = new long[16];
+    }
+
+    static File indexFile(File cipherFile) {
+        return new File(cipherFile.getPath() + ".idx");
+    }
+
+    /** Numbers between two entries. */
+    long stride() {
+        return (long) interval * blocksize;
+    }
+
+    /** Records the offset of the next indexed block. */
+    void add(long offset) {
+        if (entries == offsets.length) offsets = Arrays.copyOf(offsets, entries * 2);
+        offsets[entries++] = offset;
+    }
+
+    /** The nearest indexed block at or before {@code block}. */
+    long indexedBlock(long block) {
+        return Math.min(block / interval, entries - 1) * interval;
+    }
+
+    /** The byte offset of an indexed block, as returned by {@link #indexedBlock}. */
+    long offset(long indexedBlock) {
+        return offsets[(int) (indexedBlock / interval)];
+    }
+
+    void write(File indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(blocksize);
+            out.writeInt(interval);
+            out.writeLong(blocks);
+            out.writeShort(padding);
+            out.writeLong(cipherLength);
+            out.writeInt(entries);
+            for (int i = 0; i < entries; i++) out.writeLong(offsets[i]);
+        }
+    }
+
+    static BlockIndex read(File indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) throw new IOException("'" + indexFile + "' is not a block index");
+            int version = in.readByte();
+            if (version != VERSION) throw new IOException("Unsupported block index version " + version);
+            BlockIndex index = new BlockIndex(in.readShort() & 0xFFFF, in.readInt());
+            index.blocks = in.readLong();
+            index.padding = in.readShort() & 0xFFFF;
+            index.cipherLength = in.readLong();
+            int entries = in.readInt();
+            if (entries < 1) throw new IOException("'" + indexFile + "' is corrupt");
+            index.offsets = new long[entries];
+            for (int i = 0; i < entries; i++) index.offsets[i] = in.readLong();
+            index.entries = entries;
+            return index;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Multiplies blocks of numbers by a key matrix modulo the radix.
+ * Kernels write into buffers supplied by the caller.
+ */
+interface BlockKernel {
+
+    /**
+     * Multiplies the block starting at {@code in[inOffset]} by the key and
+     * stores the result starting at {@code out[outOffset]}.
+     */
+    void apply(int[] in, int inOffset, int[] out, int outOffset);
+
+    /**
+     * Multiplies {@code blocks} consecutive blocks of {@code in} into {@code out}.
+     */
+    default void apply(int[] in, int[] out, int blocks) {
+        int size = blocksize();
+        for (int block = 0, offset = 0; block < blocks; block++, offset += size) {
+            apply(in, offset, out, offset);
+        }
+    }
+
+    int blocksize();
+
+    /** Every number a kernel is applied to must be below the radix. */
+    int radix();
+
+    /**
+     * Picks the kernel for a key. The system property {@code hill.kernel}
+     * selects another implementation than the default ({@code flat}, {@code table},
+     * {@code gemm}, {@code wide}). Keys whose row sums could overflow an int always
+     * get the {@link WideKernel}.
+     */
+    static BlockKernel forKey(int[][] keyMatrix, int radix) {
+        String kernel = System.getProperty("hill.kernel", "flat");
+        if (!fitsInt(keyMatrix.length, radix)) kernel = "wide";
+        switch (kernel) {
+            case "flat":
+                return new FlatKernel(keyMatrix, radix);
+            case "table":
+                return new LookupTableKernel(keyMatrix, radix);
+            case "gemm":
+                return new MatrixProductKernel(keyMatrix, radix);
+            case "wide":
+                return new WideKernel(keyMatrix, radix);
+            default:
+                throw new IllegalArgumentException("Unknown kernel '" + kernel + "', expected flat, table, gemm or wide");
+        }
+    }
+
+    /**
+     * Whether a row of {@code size} products of numbers up to the radix sums up without overflowing an int.
+     */
+    static boolean fitsInt(int size, int radix) {
+        return (long) (radix - 1) * radix <= Integer.MAX_VALUE / size;
+    }
+}
+
+/**
+ * Walks a flattened copy of the key and reduces each row once.
+ */
+class FlatKernel implements BlockKernel {
+    private final int[] key;
+    private final int size;
+    private final int radix;
+
+    FlatKernel(int[][] keyMatrix, int radix) {
+        this.size = keyMatrix.length;
+        this.radix = radix;
+        this.key = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(keyMatrix[row], 0, key, row * size, size);
+        }
+    }
+
+    @Override
+    public void apply(int[] in, int inOffset, int[] out, int outOffset) {
+        for (int row = 0, k = 0; row < size; row++) {
+            int sum = 0;
+            for (int col = 0; col < size; col++, k++) {
+                sum += key[k] * in[inOffset + col];
+            }
+            out[outOffset + row] = sum % radix;
+        }
+    }
+
+    @Override
+    public int blocksize() {
+        return size;
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+}
+
+/**
+ * Looks up the reduced products {@code key[r][c] * v mod radix} in one table per
+ * column, leaving only additions and a single reduction per row.
+ * Numbers outside the table (larger than the radix) are multiplied directly.
+ */
+class LookupTableKernel implements BlockKernel {
+    private final int[] table;
+    private final int[] key;
+    private final int size;
+    private final int radix;
+    private final int values;
+
+    LookupTableKernel(int[][] keyMatrix, int radix) {
+        this.size = keyMatrix.length;
+        this.radix = radix;
+        this.values = radix + 1;
+        this.key = new int[size * size];
+        this.table = new int[size * values * size];
+        for (int col = 0; col < size; col++) {
+            for (int v = 0; v < values; v++) {
+                for (int row = 0; row < size; row++) {
+                    table[(col * values + v) * size + row] = (int) ((long) keyMatrix[row][col] * v % radix);
+                }
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(keyMatrix[row], 0, key, row * size, size);
+        }
+    }
+
+    @Override
+    public void apply(int[] in, int inOffset, int[] out, int outOffset) {
+        for (int row = 0; row < size; row++) out[outOffset + row] = 0;
+        for (int col = 0; col < size; col++) {
+            int v = in[inOffset + col];
+            if (v >= 0 && v < values) {
+                int base = (col * values + v) * size;
+                for (int row = 0; row < size; row++) out[outOffset + row] += table[base + row];
+            } else {
+                for (int row = 0; row < size; row++) out[outOffset + row] += key[row * size + col] * v % radix;
+            }
+        }
+        for (int row = 0; row < size; row++) out[outOffset + row] %= radix;
+    }
+
+    @Override
+    public int blocksize() {
+        return size;
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+}
+
+/**
+ * Treats a batch of blocks as the columns of one {@code size x K} matrix and
+ * multiplies it by the key in a single matrix-matrix product.
+ *
+ * The blocks are gathered into column-major tiles of {@link #TILE_BLOCKS} blocks,
+ * so the innermost loop runs over contiguous blocks with one key element fixed,
+ * which the JIT can vectorize. Each tile is reduced modulo the radix once and
+ * scattered back into block order. Single blocks fall back to the flat product.
+ * Every thread gathers into a tile buffer of its own, allocated on its first batch.
+ */
+class MatrixProductKernel implements BlockKernel {
+    static final int TILE_BLOCKS = 256;
+
+    private final FlatKernel single;
+    private final int[] key;
+    private final int size;
+    private final int radix;
+    /** The gathered columns of a tile followed by the row being summed. */
+    private final ThreadLocal<int[]> scratch;
+
+    MatrixProductKernel(int[][] keyMatrix, int radix) {
+        this.single = new FlatKernel(keyMatrix, radix);
+        this.size = keyMatrix.length;
+        this.radix = radix;
+        this.scratch = ThreadLocal.withInitial(() -> new int[(size + 1) * TILE_BLOCKS]);
+        this.key = new int[size * size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(keyMatrix[row], 0, key, row * size, size);
+        }
+    }
+
+    @Override
+    public void apply(int[] in, int inOffset, int[] out, int outOffset) {
+        single.apply(in, inOffset, out, outOffset);
+    }
+
+    @Override
+    public void apply(int[] in, int[] out, int blocks) {
+        int[] columns = scratch.get();
+        int sums = size * TILE_BLOCKS;
+        for (int first = 0; first < blocks; first += TILE_BLOCKS) {
+            int tile = Math.min(TILE_BLOCKS, blocks - first);
+            int base = first * size;
+            for (int block = 0; block < tile; block++) {
+                for (int col = 0; col < size; col++) columns[col * TILE_BLOCKS + block] = in[base + block * size + col];
+            }
+            for (int r = 0; r < size; r++) {
+                int k = key[r * size];
+                for (int block = 0; block < tile; block++) columns[sums + block] = k * columns[block];
+                for (int col = 1; col < size; col++) {
+                    k = key[r * size + col];
+                    int source = col * TILE_BLOCKS;
+                    for (int block = 0; block < tile; block++) columns[sums + block] += k * columns[source + block];
+                }
+                for (int block = 0; block < tile; block++) out[base + block * size + r] = columns[sums + block] % radix;
+            }
+        }
+    }
+
+    @Override
+    public int blocksize() {
+        return size;
+    }
+
+    @Override
+    public int radix() {
+        return radix;
+    }
+}
+
+/**
+ * Accumulates rows in a long, for radixes up to 2^31-1 and large block sizes.
+ *
+ * Key elements are reduced modulo the radix up front, and a row is reduced only
+ * every {@code termsPerReduction} products, as many as fit into a long next to a
+ * reduced sum for any int input. For radixes up to 2^16 that is the whole row.
+ * Reductions use Barrett's method, a multiply-high and one correction instead
+ * of a division.
+ */
+class WideKernel implements BlockKernel {
+    private final long[] key;
+    private final int size;
+    private final long radix;
+    private final long barrett;
+    private final int termsPerReduction;
+
+    WideKernel(int[][] keyMatrix, int radix) {
+        this.size = keyMatrix.length;
+        this.radix = radix;
+        this.key = new long[size * size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) key[row * size + col] = Math.floorMod(keyMatrix[row][col], radix);
+        }
+        // floor((2^64 - 1) / radix), which only fits a signed long from radix 3 on
+        this.barrett = radix < 3 ? 0 : Long.divideUnsigned(-1L, radix);
+        long maxProduct = Math.max(1, (long) (radix - 1) * Integer.MAX_VALUE);
+        this.termsPerReduction = (int) Math.min(size, (Long.MAX_VALUE - radix) / maxProduct);
+    }
+
+    @Override
+    public void apply(int[] in, int inOffset, int[] out, int outOffset) {
+        for (int row = 0, k = 0; row < size; row++) {
+            long sum = 0;
+            for (int col = 0; col < size; ) {
+                int end = Math.min(size, col + termsPerReduction);
+                for (; col < end; col++, k++) sum += key[k] * in[inOffset + col];
+                sum = reduce(sum);
+            }
+            out[outOffset + row] = (int) sum;
+        }
+    }
+
+    /**
+     * Returns {@code x mod radix} for {@code 0 <= x < 2^63}. The quotient estimate
+     * is at most one too small there, so a single correction suffices.
+     */
+    long reduce(long x) {
+        if (barrett == 0) return x % radix;
+        long r = x - Math.multiplyHigh(x, barrett) * radix;
+        return r >= radix ? r - radix : r;
+    }
+
+    @Override
+    public int blocksize() {
+        return size;
+    }
+
+    @Override
+    public int radix() {
+        return (int) radix;
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.ToIntFunction;
+
+/**
+ * Overlaps reading, the kernel and writing: a reader thread tokenizes the input
+ * into batches of blocks, worker threads run the kernel on them and the calling
+ * thread formats and writes the results in order.
+ *
+ * The stages pass a fixed ring of preallocated slots around, so no objects are
+ * created per block or per batch. The reader only refills a slot once the writer
+ * has released it, which keeps the slots in input order and bounds memory.
+ */
+class BlockPipeline {
+    static final int SLOT_BLOCKS = 4096;
+
+    private static final int FREE = 0;
+    private static final int FILLED = 1;
+    private static final int COMPUTED = 2;
+
+    /** Fills the padding of the final block starting at {@code offset}. */
+    interface Padding {
+        void pad(int[] numbers, int offset, long totalNumbers);
+    }
+
+    private final BlockKernel kernel;
+    private final CipherStats stats;
+    private final int blocksize;
+    private final int workers;
+    private final Slot[] ring;
+    private final ArrayBlockingQueue<Slot> filled;
+    private volatile Throwable failure;
+
+    BlockPipeline(BlockKernel kernel, int workers, CipherStats stats) {
+        this.kernel = kernel;
+        this.stats = stats;
+        this.blocksize = kernel.blocksize();
+        this.workers = Math.max(1, workers);
+        this.ring = new Slot[this.workers * 2 + 2];
+        for (int i = 0; i < ring.length; i++) ring[i] = new Slot(SLOT_BLOCKS * blocksize);
+        this.filled = new ArrayBlockingQueue<>(ring.length);
+    }
+
+    /**
+     * Encrypts the input, padding the final block. Returns the number of numbers read.
+     */
+    long encrypt(NumberTokenizer tokenizer, NumberWriter writer, Padding padding) throws IOException {
+        long[] total = new long[1];
+        run(() -> total[0] = read(tokenizer, padding), writer, null);
+        return total[0];
+    }
+
+    /**
+     * Decrypts the input, removing the padding of the final block with {@code removePadding},
+     * which returns how many numbers of that block are data. Returns the number of numbers written.
+     */
+    long decrypt(NumberTokenizer tokenizer, NumberWriter writer, ToIntFunction<int[]> removePadding) throws IOException {
+        return run(() -> read(tokenizer, null), writer, removePadding);
+    }
+
+    private long run(Runnable reader, NumberWriter writer, ToIntFunction<int[]> removePadding) throws IOException {
+        Thread[] threads = new Thread[workers + 1];
+        threads[0] = new Thread(() -> stage(reader), "hill-pipeline-reader");
+        for (int i = 1; i < threads.length; i++) threads[i] = new Thread(() -> stage(this::compute), "hill-pipeline-worker");
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            return write(writer, removePadding);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            for (Thread thread : threads) thread.interrupt();
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void stage(Runnable body) {
+        try {
+            body.run();
+        } catch (Throwable e) {
+            if (!(e.getCause() instanceof InterruptedException)) fail(e);
+        }
+    }
+
+    private long read(NumberTokenizer tokenizer, Padding padding) {
+        try {
+            long total = 0;
+            for (long sequence = 0; ; sequence++) {
+                Slot slot = ring[(int) (sequence % ring.length)];
+                await(slot, FREE);
+                long start = stats.start();
+                int read = tokenizer.read(slot.in, 0, slot.in.length);
+                stats.stop(CipherStats.Phase.TOKENIZE, start);
+                total += read;
+                slot.last = read < slot.in.length;
+                slot.blocks = read / blocksize;
+                if (slot.last) {
+                    if (padding != null) {
+                        if (total == 0) throw new IllegalArgumentException("The input does not contain any numbers.");
+                        padding.pad(slot.in, slot.blocks * blocksize, total);
+                        slot.blocks++;
+                    } else if (read % blocksize != 0 || total == 0) {
+                        throw new IllegalArgumentException("The number of letter-numbers in the input is not a multiple of <blocksize>.");
+                    }
+                }
+                publish(slot);
+                if (slot.last) return total;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void compute() {
+        try {
+            while (true) {
+                Slot slot = filled.take();
+                long start = stats.start();
+                kernel.apply(slot.in, slot.out, slot.blocks);
+                stats.stop(CipherStats.Phase.KERNEL, start);
+                synchronized (slot) {
+                    slot.state = COMPUTED;
+                    slot.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long write(NumberWriter writer, ToIntFunction<int[]> removePadding) throws IOException, InterruptedException {
+        int[] heldBackBlock = new int[blocksize];
+        boolean holding = false;
+        long written = 0;
+        for (long sequence = 0; ; sequence++) {
+            Slot slot = ring[(int) (sequence % ring.length)];
+            await(slot, COMPUTED);
+            long start = stats.start();
+            int numbers = slot.blocks * blocksize;
+            if (removePadding != null && slot.blocks > 0) {
+                if (holding) {
+                    writer.write(heldBackBlock, 0, blocksize);
+                    written += blocksize;
+                }
+                System.arraycopy(slot.out, numbers - blocksize, heldBackBlock, 0, blocksize);
+                holding = true;
+                numbers -= blocksize;
+            }
+            writer.write(slot.out, 0, numbers);
+            stats.stop(CipherStats.Phase.WRITE, start);
+            written += numbers;
+            boolean last = slot.last;
+            synchronized (slot) {
+                slot.state = FREE;
+                slot.notifyAll();
+            }
+            if (last) break;
+        }
+        if (removePadding != null) {
+            int lastBlockLength = removePadding.applyAsInt(heldBackBlock);
+            writer.write(heldBackBlock, 0, lastBlockLength);
+            written += lastBlockLength;
+        }
+        return written;
+    }
+
+    private void publish(Slot slot) throws InterruptedException {
+        synchronized (slot) {
+            slot.state = FILLED;
+        }
+        filled.put(slot);
+    }
+
+    private void await(Slot slot, int state) throws InterruptedException, IOException {
+        synchronized (slot) {
+            while (slot.state != state) {
+                rethrowFailure();
+                slot.wait(100);
+            }
+        }
+        rethrowFailure();
+    }
+
+    private void fail(Throwable e) {
+        if (failure == null) failure = e;
+        for (Slot slot : ring) {
+            synchronized (slot) {
+                slot.notifyAll();
+            }
+        }
+    }
+
+    private void rethrowFailure() throws IOException {
+        Throwable e = failure;
+        if (e == null) return;
+        if (e instanceof UncheckedIOException) throw ((UncheckedIOException) e).getCause();
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        throw new IOException(e);
+    }
+
+    private static final class Slot {
+        final int[] in;
+        final int[] out;
+        int blocks;
+        boolean last;
+        int state = FREE;
+
+        Slot(int numbers) {
+            this.in = new int[numbers];
+            this.out = new int[numbers];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * How a file is encrypted or decrypted. The defaults process it on one thread,
+ * as decimal text; options that only apply to one direction say so.
+ */
+final class CipherOptions {
+    int threads = 1;
+    boolean pipelined;
+    boolean binary;
+    int indexInterval;
+    boolean memoryMapped;
+
+    /** Threads for the fork-join mode, or workers of the pipeline. */
+    CipherOptions threads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("--threads must be at least 1");
+        this.threads = threads;
+        return this;
+    }
+
+    /** Runs reading, the kernel and writing concurrently in a {@link BlockPipeline}. */
+    CipherOptions pipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+        return this;
+    }
+
+    /** Encryption: writes the {@link BinaryCipherFormat} instead of decimal text. */
+    CipherOptions binary(boolean binary) {
+        this.binary = binary;
+        return this;
+    }
+
+    /**
+     * Encryption: a positive interval writes a {@link BlockIndex} of every
+     * {@code indexInterval}-th block next to a decimal cipher file.
+     */
+    CipherOptions indexInterval(int indexInterval) {
+        this.indexInterval = indexInterval;
+        return this;
+    }
+
+    /** Decryption: reads the cipher file through a memory mapping. */
+    CipherOptions memoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        return this;
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and phase timings of one cipher run, printed by {@code --stats}
+ * and exported as JSON by {@code --stats-json}.
+ *
+ * Phases are timed around whole batches of blocks, never single numbers. When
+ * several threads work at once their phase times add up, so the phases can sum
+ * to more than the wall time. {@link #DISABLED} ignores everything and is what
+ * the engines use unless a run asks for statistics.
+ */
+final class CipherStats {
+    enum Phase {
+        KEY_VALIDATION, TOKENIZE, KERNEL, PADDING, WRITE;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    static final CipherStats DISABLED = new CipherStats(null);
+
+    final String operation;
+    private final boolean enabled;
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder bytesParsed = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder blocks = new LongAdder();
+    private final long started = System.nanoTime();
+    private volatile long finished;
+
+    CipherStats(String operation) {
+        this.operation = operation;
+        this.enabled = operation != null;
+        for (int i = 0; i < phaseNanos.length; i++) phaseNanos[i] = new LongAdder();
+    }
+
+    /** Returns a timestamp to pass to {@link #stop}. */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    void stop(Phase phase, long start) {
+        if (enabled) phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+    }
+
+    void addBytesParsed(long bytes) {
+        if (enabled) bytesParsed.add(bytes);
+    }
+
+    void addBytesWritten(long bytes) {
+        if (enabled) bytesWritten.add(bytes);
+    }
+
+    void addBlocks(long count) {
+        if (enabled) blocks.add(count);
+    }
+
+    /** Ends the wall clock of the run. */
+    void finish() {
+        finished = System.nanoTime();
+    }
+
+    private double seconds() {
+        return ((finished == 0 ? System.nanoTime() : finished) - started) / 1e9;
+    }
+
+    String format() {
+        double seconds = seconds();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%s: %d bytes parsed, %d bytes written, %d blocks in %.3f s (%.1f MB/s, %.0f blocks/s)%n",
+                operation, bytesParsed.sum(), bytesWritten.sum(), blocks.sum(), seconds,
+                bytesParsed.sum() / 1e6 / seconds, blocks.sum() / seconds));
+        for (Phase phase : Phase.values()) {
+            sb.append(String.format(Locale.ROOT, "  %-15s %10.3f s%n", phase.key(), phaseNanos[phase.ordinal()].sum() / 1e9));
+        }
+        return sb.toString();
+    }
+
+    String toJson() {
+        double seconds = seconds();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "{\"operation\":\"%s\",\"bytes_parsed\":%d,\"bytes_written\":%d,\"blocks\":%d,"
+                        + "\"wall_seconds\":%.6f,\"mb_per_second\":%.3f,\"blocks_per_second\":%.1f,\"phase_seconds\":{",
+                operation, bytesParsed.sum(), bytesWritten.sum(), blocks.sum(), seconds,
+                bytesParsed.sum() / 1e6 / seconds, blocks.sum() / seconds));
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) sb.append(',');
+            sb.append(String.format(Locale.ROOT, "\"%s\":%.6f", phase.key(), phaseNanos[phase.ordinal()].sum() / 1e9));
+        }
+        return sb.append("}}").toString();
+    }
+
+    /**
+     * Prints the statistics on stderr if {@code print} is set, and writes them as JSON
+     * to {@code jsonFile} if it is not null ("-" for stdout).
+     */
+    void report(boolean print, String jsonFile) throws IOException {
+        finish();
+        if (print) System.err.print(format());
+        if (jsonFile == null) return;
+        if (jsonFile.equals("-")) {
+            System.out.println(toJson());
+            return;
+        }
+        try (Writer out = new FileWriter(new File(jsonFile))) {
+            out.write(toJson());
+            out.write('\n');
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * What HillCipher and HillDecipher share around the engines: "-" for stdin and
+ * stdout, and reporting a failed job on stderr before ending the program.
+ */
+final class CommandLine {
+
+    interface Job {
+        long run() throws IOException;
+    }
+
+    private CommandLine() {
+    }
+
+    /**
+     * Runs a job that reads {@code inputName}, and reports its errors on stderr and ends
+     * the program with exit code 1 if it fails. The options must be validated before, as
+     * an IllegalArgumentException is reported as a problem of the input.
+     */
+    static long runOrExit(String inputName, Job job) {
+        try {
+            return job.run();
+        } catch (FileNotFoundException e) {
+            System.err.println(e.getMessage() + ". Shutting down...");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (NumberFormatException e) {
+            System.err.println("One or more letter-numbers could not be parsed as Integers: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("The file '" + inputName + "': " + e.getMessage());
+        }
+        System.exit(1);
+        return -1;
+    }
+
+    static InputStream openInput(String name) throws IOException {
+        return name.equals("-") ? System.in : new FileInputStream(name);
+    }
+
+    /**
+     * Opens the file, or stdout for "-", which closing only flushes so that later
+     * output such as the stats still reaches it.
+     */
+    static OutputStream openOutput(String name) throws IOException {
+        if (!name.equals("-")) return new FileOutputStream(name);
+        return new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+}
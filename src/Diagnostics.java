@@ -0,0 +1,44 @@
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Leveled diagnostic output on stderr, off unless the system property
+ * {@code hill.log} is set to {@code info} or {@code debug}. Any other value
+ * is warned about once and leaves the output off.
+ *
+ * Messages that are expensive to build are passed as suppliers, so nothing is
+ * formatted while the level is off.
+ */
+final class Diagnostics {
+    enum Level { OFF, INFO, DEBUG }
+
+    private static final Level level = parse(System.getProperty("hill.log", "off"));
+
+    private Diagnostics() {
+    }
+
+    private static Level parse(String name) {
+        try {
+            return Level.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level '" + name + "' in hill.log, expected off, info or debug. Logging is off.");
+            return Level.OFF;
+        }
+    }
+
+    static boolean enabled(Level messageLevel) {
+        return messageLevel != Level.OFF && messageLevel.compareTo(level) <= 0;
+    }
+
+    static void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+
+    static void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+
+    private static void log(Level messageLevel, Supplier<String> message) {
+        if (enabled(messageLevel)) System.err.println("[" + messageLevel.name().toLowerCase(Locale.ROOT) + "] " + message.get());
+    }
+}
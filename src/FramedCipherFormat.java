@@ -0,0 +1,102 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Stream of self-contained cipher frames, for input that arrives over time from a
+ * pipe or socket and cannot be read to its end before encrypting.
+ *
+ * <pre>
+ * "HILS" | version (1) | symbol width (1) | block size (2) | radix (4) | frame ... | end frame
+ * frame: symbols (4) | padding (2) | symbol * symbols
+ * </pre>
+ *
+ * Every frame holds whole blocks and is padded like a complete cipher text, so it
+ * can be decrypted as soon as it has arrived. Symbols are packed big-endian as in
+ * the {@link BinaryCipherFormat}. The end frame has zero symbols, which tells a
+ * finished stream from a truncated one.
+ */
+final class FramedCipherFormat {
+    static final byte[] MAGIC = {'H', 'I', 'L', 'S'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int FRAME_HEADER_SIZE = 6;
+    static final int MAX_FRAME_SYMBOLS = 1 << 24;
+
+    final int symbolWidth;
+    final int blocksize;
+    final int radix;
+
+    private FramedCipherFormat(int symbolWidth, int blocksize, int radix) {
+        this.symbolWidth = symbolWidth;
+        this.blocksize = blocksize;
+        this.radix = radix;
+    }
+
+    static void writeHeader(OutputStream out, int radix, int blocksize) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).put((byte) VERSION).put((byte) BinaryCipherFormat.symbolWidth(radix))
+                .putShort((short) blocksize).putInt(radix);
+        out.write(header.array());
+    }
+
+    /**
+     * Packs one frame of {@code symbols} numbers, whose last block carries {@code padding}
+     * numbers of padding, into {@code frame} and returns its length in bytes.
+     */
+    static int packFrame(int[] numbers, int symbols, int padding, int symbolWidth, byte[] frame) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(symbols).putShort((short) padding);
+        int position = FRAME_HEADER_SIZE;
+        for (int i = 0; i < symbols; i++) {
+            int number = numbers[i];
+            for (int shift = (symbolWidth - 1) * 8; shift >= 0; shift -= 8) frame[position++] = (byte) (number >>> shift);
+        }
+        return position;
+    }
+
+    static byte[] endFrame() {
+        return new byte[FRAME_HEADER_SIZE];
+    }
+
+    /**
+     * Reads the stream header.
+     *
+     * @throws IllegalArgumentException if the stream is not framed
+     */
+    static FramedCipherFormat readHeader(DataInputStream in) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        try {
+            in.readFully(header);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("The input is not a framed cipher stream.");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) throw new IllegalArgumentException("The input is not a framed cipher stream.");
+        int version = buffer.get();
+        if (version != VERSION) throw new IOException("Unsupported framed cipher stream version " + version);
+        int symbolWidth = buffer.get();
+        int blocksize = buffer.getShort() & 0xFFFF;
+        return new FramedCipherFormat(symbolWidth, blocksize, buffer.getInt());
+    }
+
+    /**
+     * Unpacks {@code symbols} big-endian symbols from {@code bytes} into {@code numbers},
+     * rejecting any symbol that is not below {@code radix}.
+     */
+    void unpack(byte[] bytes, int symbols, int[] numbers, int radix) {
+        for (int i = 0, position = 0; i < symbols; i++) {
+            int value = 0;
+            for (int b = 0; b < symbolWidth; b++) value = value << 8 | (bytes[position++] & 0xFF);
+            if (value < 0 || value >= radix) {
+                throw new IllegalArgumentException("The number " + Integer.toUnsignedString(value) + " in the input is not below the radix " + radix + ".");
+            }
+            numbers[i] = value;
+        }
+    }
+}
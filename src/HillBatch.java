@@ -0,0 +1,154 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Encrypts or decrypts every file of a directory, or every file matching a glob,
+ * concurrently with one key, mirroring the input tree into an output directory.
+ *
+ * Every file gets its own virtual thread when the JVM has them (Java 21+), and a
+ * thread from a pool sized to the cores otherwise. A semaphore bounds how many
+ * files, and thereby how many I/O buffers, are in flight at once.
+ */
+public class HillBatch {
+
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            throw new IllegalArgumentException("Arguments must be: <encrypt|decrypt> <radix> <blocksize> <keyfile> <inputdir|glob> <outputdir> [--binary] [--max-in-flight N]");
+        }
+        try {
+            boolean encrypt;
+            if (args[0].equals("encrypt")) encrypt = true;
+            else if (args[0].equals("decrypt")) encrypt = false;
+            else throw new IllegalArgumentException("The first argument must be encrypt or decrypt");
+            int radix = Integer.parseInt(args[1]);
+            int size = Integer.parseInt(args[2]);
+            HillKey key = HillKey.read(radix, size, new File(args[3]));
+            boolean binary = false;
+            int maxInFlight = Runtime.getRuntime().availableProcessors() * 4;
+            for (int i = 6; i < args.length; i++) {
+                if (args[i].equals("--binary")) binary = true;
+                else if (args[i].equals("--max-in-flight") && i + 1 < args.length) maxInFlight = Integer.parseInt(args[++i]);
+                else throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            boolean succeeded = run(encrypt, key, args[4], Paths.get(args[5]), binary, maxInFlight);
+            if (!succeeded) System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.print("Args <radix>, <blocksize> and --max-in-flight must be integers");
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Processes all input files and prints a throughput summary.
+     * Returns false if any file failed.
+     */
+    static boolean run(boolean encrypt, HillKey key, String input, Path outputDirectory, boolean binary, int maxInFlight)
+            throws IOException {
+        Path base = baseDirectory(input);
+        List<Path> files = listFiles(input, base);
+        HillCipherEngine cipherEngine = encrypt ? new HillCipherEngine(key) : null;
+        HillDecipherEngine decipherEngine = encrypt ? null : new HillDecipherEngine(key);
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicLong bytesRead = new AtomicLong();
+        AtomicLong bytesWritten = new AtomicLong();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        ExecutorService executor = newExecutor();
+        try {
+            for (Path file : files) {
+                Path output = outputDirectory.resolve(base.relativize(file));
+                executor.execute(() -> {
+                    try {
+                        inFlight.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        Files.createDirectories(output.toAbsolutePath().getParent());
+                        if (encrypt) cipherEngine.encryptFile(file.toFile(), output.toFile(), new CipherOptions().binary(binary));
+                        else decipherEngine.decryptFile(file.toFile(), output.toFile(), new CipherOptions());
+                        bytesRead.addAndGet(Files.size(file));
+                        bytesWritten.addAndGet(Files.size(output));
+                    } catch (IOException | IllegalArgumentException e) {
+                        failed.incrementAndGet();
+                        System.err.println(file + ": " + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s %d files (%d failed): %.1f MB read, %.1f MB written in %.3f s, %.1f MB/s, %.1f files/s%n",
+                encrypt ? "Encrypted" : "Decrypted", files.size() - failed.get(), failed.get(),
+                bytesRead.get() / 1e6, bytesWritten.get() / 1e6, seconds,
+                bytesRead.get() / 1e6 / seconds, files.size() / seconds);
+        return failed.get() == 0;
+    }
+
+    /**
+     * One virtual thread per task where available, otherwise a pool sized to the cores.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * The directory itself, or for a glob the directory before its first wildcard.
+     */
+    private static Path baseDirectory(String input) {
+        Path path = Paths.get(input);
+        if (Files.isDirectory(path)) return path;
+        Path base = path.isAbsolute() ? path.getRoot() : Paths.get("");
+        for (Path part : path) {
+            if (part.toString().matches(".*[*?\\[{].*")) break;
+            base = base.resolve(part);
+        }
+        return base.toString().isEmpty() ? Paths.get(".") : base;
+    }
+
+    private static List<Path> listFiles(String input, Path base) throws IOException {
+        Path path = Paths.get(input);
+        PathMatcher matcher = Files.isDirectory(path) ? p -> true : FileSystems.getDefault().getPathMatcher("glob:" + input);
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(base)) {
+            walk.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(p) || matcher.matches(base.relativize(p)) || matcher.matches(p.normalize()))
+                    .forEach(files::add);
+        }
+        if (files.isEmpty()) throw new IllegalArgumentException("No input files match '" + input + "'");
+        return files;
+    }
+}
@@ -0,0 +1,259 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Encrypts decimal plaintext with one {@link HillKey}. Malformed input is reported
+ * with an IllegalArgumentException (NumberFormatException for unparsable numbers).
+ */
+class HillCipherEngine {
+    /** Blocks handed to the kernel at once, so batched kernels see whole matrices. */
+    static final int BATCH_BLOCKS = 256;
+
+    final HillKey key;
+    final int radix;
+    final int blocksize;
+    final BlockKernel kernel;
+    final CipherStats stats;
+
+    HillCipherEngine(HillKey key) {
+        this(key, CipherStats.DISABLED);
+    }
+
+    /**
+     * An engine that records the phases of everything it encrypts into {@code stats}.
+     */
+    HillCipherEngine(HillKey key, CipherStats stats) {
+        this.key = key;
+        this.stats = stats;
+        this.radix = key.radix;
+        this.blocksize = key.blocksize;
+        this.kernel = key.kernel;
+        checkPaddingFits(radix, blocksize);
+    }
+
+    /**
+     * Encrypts everything readable from {@code in} as decimal text into {@code out}.
+     * Neither stream is closed. Returns the number of plaintext numbers read.
+     */
+    long encrypt(InputStream in, OutputStream out) throws IOException {
+        return encrypt(Channels.newChannel(in), out);
+    }
+
+    long encrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        return encrypt(in, Channels.newOutputStream(out));
+    }
+
+    /**
+     * Encrypts the remaining bytes of {@code plainText} and returns the cipher text.
+     */
+    ByteBuffer encrypt(ByteBuffer plainText) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plainText.remaining() + 16);
+        NumberWriter writer = new NumberWriter(out);
+        encrypt(new NumberTokenizer(plainText.duplicate()).radix(radix), writer);
+        writer.close();
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private long encrypt(ReadableByteChannel in, OutputStream out) throws IOException {
+        NumberWriter writer = new NumberWriter(out);
+        long numOfNumbersAdded = encrypt(new NumberTokenizer(in).radix(radix), writer);
+        writer.flush();
+        out.flush();
+        return numOfNumbersAdded;
+    }
+
+    /**
+     * Encrypts {@code plainTextFile} into {@code cipherFile}, as decimal text or in the
+     * {@link BinaryCipherFormat}. With several threads, blocks are encrypted fork-join in
+     * parallel, or, if pipelined, reading, encryption and writing run concurrently in a
+     * {@link BlockPipeline}. An index is recorded while blocks are written in order, so
+     * several threads then always run as a pipeline.
+     */
+    long encryptFile(File plainTextFile, File cipherFile, CipherOptions options) throws IOException {
+        boolean binary = options.binary;
+        int threads = options.threads;
+        boolean pipelined = options.pipelined;
+        BlockIndex index = options.indexInterval > 0 && !binary ? new BlockIndex(blocksize, options.indexInterval) : null;
+        if (index != null && threads > 1) pipelined = true;
+        try (FileChannel channel = new FileInputStream(plainTextFile).getChannel();
+             FileOutputStream out = new FileOutputStream(cipherFile)) {
+            NumberWriter writer;
+            if (binary) {
+                BinaryCipherFormat.writeHeader(out, radix, blocksize);
+                writer = new BinaryNumberWriter(out, BinaryCipherFormat.symbolWidth(radix));
+            } else {
+                writer = new NumberWriter(out);
+            }
+            if (index != null) writer.indexBlocks(index);
+            long numOfNumbersAdded;
+            if (pipelined) numOfNumbersAdded = new BlockPipeline(kernel, threads, stats).encrypt(new NumberTokenizer(channel).radix(radix), writer, this::fillPadding);
+            else if (threads > 1) numOfNumbersAdded = encryptParallel(channel, writer, threads);
+            else numOfNumbersAdded = encrypt(new NumberTokenizer(channel).radix(radix), writer);
+            long closing = stats.start();
+            writer.close();
+            stats.stop(CipherStats.Phase.WRITE, closing);
+            if (binary) BinaryCipherFormat.writePadding(cipherFile, paddingFor(numOfNumbersAdded));
+            if (index != null) {
+                index.blocks = numOfNumbersAdded / blocksize + 1;
+                index.padding = paddingFor(numOfNumbersAdded);
+                index.cipherLength = cipherFile.length();
+                index.write(BlockIndex.indexFile(cipherFile));
+            }
+            stats.addBytesParsed(channel.size());
+            stats.addBytesWritten(cipherFile.length());
+            stats.addBlocks(numOfNumbersAdded / blocksize + 1);
+            return numOfNumbersAdded;
+        }
+    }
+
+    /**
+     * Encrypts decimal plaintext from {@code in} into a {@link FramedCipherFormat} stream on
+     * {@code out} without waiting for the end of the input: every {@code frameBlocks} blocks
+     * read are padded, encrypted and flushed as a frame of their own. Only the last frame,
+     * cut short by the end of the input, is smaller. Neither stream is closed. Returns the
+     * number of plaintext numbers read.
+     */
+    long encryptFramed(InputStream in, OutputStream out, int frameBlocks) throws IOException {
+        checkFrameBlocks(blocksize, frameBlocks);
+        int frameNumbers = frameBlocks * blocksize;
+        int symbolWidth = BinaryCipherFormat.symbolWidth(radix);
+        int[] loadedNumbers = new int[frameNumbers + blocksize];
+        int[] encrypted = new int[frameNumbers + blocksize];
+        byte[] frame = new byte[FramedCipherFormat.FRAME_HEADER_SIZE + (frameNumbers + blocksize) * symbolWidth];
+        NumberTokenizer tokenizer = new NumberTokenizer(Channels.newChannel(in)).radix(radix);
+        FramedCipherFormat.writeHeader(out, radix, blocksize);
+        long numOfNumbersAdded = 0;
+        int read;
+        do {
+            long start = stats.start();
+            read = tokenizer.read(loadedNumbers, 0, frameNumbers);
+            stats.stop(CipherStats.Phase.TOKENIZE, start);
+            if (read == 0) break;
+            numOfNumbersAdded += read;
+            int fullNumbers = read - read % blocksize;
+            fillPadding(loadedNumbers, fullNumbers, read);
+            int blocks = fullNumbers / blocksize + 1;
+            start = stats.start();
+            kernel.apply(loadedNumbers, encrypted, blocks);
+            stats.stop(CipherStats.Phase.KERNEL, start);
+            start = stats.start();
+            int length = FramedCipherFormat.packFrame(encrypted, blocks * blocksize, paddingFor(read), symbolWidth, frame);
+            out.write(frame, 0, length);
+            out.flush();
+            stats.stop(CipherStats.Phase.WRITE, start);
+            stats.addBytesWritten(length);
+            stats.addBlocks(blocks);
+        } while (read == frameNumbers);
+        out.write(FramedCipherFormat.endFrame());
+        out.flush();
+        return numOfNumbersAdded;
+    }
+
+    long encrypt(NumberTokenizer tokenizer, NumberWriter writer) throws IOException {
+        int[] loadedNumbers = new int[BATCH_BLOCKS * blocksize];
+        int[] encrypted = new int[BATCH_BLOCKS * blocksize];
+        long numOfNumbersAdded = 0;
+        int read;
+        while (true) {
+            long start = stats.start();
+            read = tokenizer.read(loadedNumbers, 0, loadedNumbers.length);
+            stats.stop(CipherStats.Phase.TOKENIZE, start);
+            if (read != loadedNumbers.length) break;
+            numOfNumbersAdded += read;
+            start = stats.start();
+            kernel.apply(loadedNumbers, encrypted, BATCH_BLOCKS);
+            stats.stop(CipherStats.Phase.KERNEL, start);
+            start = stats.start();
+            writer.write(encrypted, 0, read);
+            stats.stop(CipherStats.Phase.WRITE, start);
+        }
+        numOfNumbersAdded += read;
+        checkNotEmpty(numOfNumbersAdded);
+        int fullNumbers = read - read % blocksize;
+        long start = stats.start();
+        kernel.apply(loadedNumbers, encrypted, fullNumbers / blocksize);
+        stats.stop(CipherStats.Phase.KERNEL, start);
+        start = stats.start();
+        writer.write(encrypted, 0, fullNumbers);
+        stats.stop(CipherStats.Phase.WRITE, start);
+        addPadding(writer, Arrays.copyOfRange(loadedNumbers, fullNumbers, fullNumbers + blocksize), numOfNumbersAdded);
+        return numOfNumbersAdded;
+    }
+
+    private long encryptParallel(FileChannel channel, NumberWriter writer, int threads) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            ParallelBlockProcessor processor = new ParallelBlockProcessor(channel, threads, kernel, null, stats);
+            long numOfNumbersAdded = processor.countNumbers(pool);
+            checkNotEmpty(numOfNumbersAdded);
+            long fullBlocks = numOfNumbersAdded / blocksize;
+            processor.process(pool, fullBlocks, writer);
+            int[] rest = processor.readNumbers(fullBlocks * blocksize, (int) (numOfNumbersAdded % blocksize));
+            addPadding(writer, Arrays.copyOf(rest, blocksize), numOfNumbersAdded);
+            return numOfNumbersAdded;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * The last number of the padding tells how many numbers were padded, up to the
+     * block size, so it must be smaller than the radix to survive encryption.
+     */
+    static void checkPaddingFits(int radix, int blocksize) {
+        if (blocksize >= radix) throw new IllegalArgumentException("The block size must be smaller than the radix.");
+    }
+
+    /**
+     * A frame holds {@code frameBlocks} blocks and, in the last frame, one more of padding.
+     */
+    static void checkFrameBlocks(int blocksize, int frameBlocks) {
+        if (frameBlocks < 1 || ((long) frameBlocks + 1) * blocksize > FramedCipherFormat.MAX_FRAME_SYMBOLS) {
+            throw new IllegalArgumentException("Frames must hold between 1 and " + (FramedCipherFormat.MAX_FRAME_SYMBOLS / blocksize - 1) + " blocks.");
+        }
+    }
+
+    private void checkNotEmpty(long numOfNumbersAdded) {
+        if (numOfNumbersAdded == 0) throw new IllegalArgumentException("The input does not contain any numbers.");
+    }
+
+    private int paddingFor(long totalNumRead) {
+        return blocksize - (int) (totalNumRead % blocksize);
+    }
+
+    void addPadding(NumberWriter writer, int[] currentlyLoaded, long totalNumRead) throws IOException {
+        fillPadding(currentlyLoaded, 0, totalNumRead);
+        int[] encrypted = new int[blocksize];
+        encryptArray(currentlyLoaded, encrypted);
+        writer.write(encrypted, 0, blocksize);
+    }
+
+    /**
+     * Pads the last block, which starts at {@code offset} in {@code numbers}.
+     */
+    private void fillPadding(int[] numbers, int offset, long totalNumRead) {
+        long start = stats.start();
+        int restSize = (int) (totalNumRead % blocksize);
+        int numbersToPad = paddingFor(totalNumRead);
+        for (int i = 0; i < numbersToPad-1; i++){
+            numbers[offset + restSize + i] = addRandomNum();
+        }
+        numbers[offset + blocksize-1] = numbersToPad;
+        stats.stop(CipherStats.Phase.PADDING, start);
+    }
+
+    private int addRandomNum() {
+        return ThreadLocalRandom.current().nextInt(radix);
+    }
+
+    private void encryptArray(int[] loadedNumbers, int[] encrypted) {
+        kernel.apply(loadedNumbers, 0, encrypted, 0);
+    }
+}
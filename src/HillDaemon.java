@@ -0,0 +1,272 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Long-running cipher server, so that many small jobs pay JVM startup, class
+ * loading and key validation once instead of once per file.
+ *
+ * The server listens on a Unix domain socket or a loopback port and reads one
+ * request per line, answering each with one line: {@code OK <result>} or
+ * {@code ERROR <message>}.
+ *
+ * <pre>
+ * ENCRYPT &lt;radix&gt; &lt;blocksize&gt; &lt;keyfile&gt; &lt;plainfile&gt; &lt;cipherfile&gt; [--binary]
+ * DECRYPT &lt;radix&gt; &lt;blocksize&gt; &lt;keyfile&gt; &lt;cipherfile&gt; &lt;plainfile&gt;
+ * ENCRYPT-INLINE &lt;radix&gt; &lt;blocksize&gt; &lt;keyfile&gt; &lt;numbers...&gt;
+ * DECRYPT-INLINE &lt;radix&gt; &lt;blocksize&gt; &lt;keyfile&gt; &lt;numbers...&gt;
+ * SHUTDOWN
+ * </pre>
+ *
+ * File jobs answer with the number of symbols processed, inline jobs with the
+ * resulting numbers. Parsed keys stay loaded until their key file changes.
+ * Requests from all connections go through one queue; every worker takes as many
+ * waiting jobs as it can and runs them grouped by key.
+ */
+public class HillDaemon {
+    static final int MAX_BATCH = 64;
+
+    private final ConcurrentHashMap<String, LoadedKey> keys = new ConcurrentHashMap<>();
+    private final BlockingQueue<Job> jobs = new LinkedBlockingQueue<>();
+    private volatile boolean running = true;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Arguments must be: (--socket <path> | --port <port>) [--workers N]"
+                    + " or: client (--socket <path> | --port <port>) <request...>");
+        }
+        try {
+            if (args[0].equals("client")) {
+                if (args.length < 4) throw new IllegalArgumentException("Arguments must be: client (--socket <path> | --port <port>) <request...>");
+                System.out.println(request(address(args[1], args[2]), String.join(" ", Arrays.asList(args).subList(3, args.length))));
+                return;
+            }
+            int workers = Runtime.getRuntime().availableProcessors();
+            if (args.length == 4 && args[2].equals("--workers")) workers = Integer.parseInt(args[3]);
+            new HillDaemon().serve(address(args[0], args[1]), workers);
+        } catch (NumberFormatException e) {
+            System.err.print("Args <port> and --workers must be integers");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private static SocketAddress address(String option, String value) {
+        switch (option) {
+            case "--socket":
+                return UnixDomainSocketAddress.of(value);
+            case "--port":
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(value));
+            default:
+                throw new IllegalArgumentException("Unknown option: " + option);
+        }
+    }
+
+    private static SocketChannel open(SocketAddress address) throws IOException {
+        return address instanceof UnixDomainSocketAddress ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+    }
+
+    /**
+     * Sends one request to a running daemon and returns its answer.
+     */
+    static String request(SocketAddress address, String request) throws IOException {
+        try (SocketChannel channel = open(address)) {
+            channel.connect(address);
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.US_ASCII));
+            out.write(request);
+            out.write('\n');
+            out.flush();
+            return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.US_ASCII)).readLine();
+        }
+    }
+
+    void serve(SocketAddress address, int workers) throws IOException {
+        boolean unix = address instanceof UnixDomainSocketAddress;
+        ServerSocketChannel server = unix ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        if (unix) Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        server.bind(address);
+        System.out.println("Listening on " + server.getLocalAddress() + " with " + workers + " workers");
+
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "hill-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        try {
+            while (running) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (IOException e) {
+                    if (!running) break;
+                    throw e;
+                }
+                Thread connection = new Thread(() -> handle(client, server), "hill-connection");
+                connection.setDaemon(true);
+                connection.start();
+            }
+        } finally {
+            server.close();
+            if (unix) Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    private void handle(SocketChannel client, ServerSocketChannel server) {
+        try (SocketChannel channel = client) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.US_ASCII));
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.US_ASCII));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().equals("SHUTDOWN")) {
+                    running = false;
+                    out.write("OK\n");
+                    out.flush();
+                    server.close();
+                    return;
+                }
+                Job job = new Job(line.trim().split("\\s+"));
+                jobs.add(job);
+                String result;
+                try {
+                    result = job.result.get();
+                } catch (ExecutionException e) {
+                    result = "ERROR " + e.getCause();
+                }
+                out.write(result);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        List<Job> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(jobs.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            jobs.drainTo(batch, MAX_BATCH - 1);
+            batch.sort(Comparator.comparing(job -> job.keyId));
+            for (Job job : batch) {
+                // an Error fails only its own job, the worker keeps serving the queue
+                try {
+                    job.result.complete(run(job));
+                } catch (Throwable t) {
+                    job.result.completeExceptionally(t);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private String run(Job job) {
+        String[] request = job.request;
+        try {
+            if (request.length < 4) throw new IllegalArgumentException("Unknown request: " + String.join(" ", request));
+            HillKey key = key(Integer.parseInt(request[1]), Integer.parseInt(request[2]), new File(request[3]));
+            switch (request[0]) {
+                case "ENCRYPT":
+                    checkLength(request, 6);
+                    boolean binary = request.length > 6 && request[6].equals("--binary");
+                    return "OK " + new HillCipherEngine(key).encryptFile(new File(request[4]), new File(request[5]), new CipherOptions().binary(binary));
+                case "DECRYPT":
+                    checkLength(request, 6);
+                    return "OK " + new HillDecipherEngine(key).decryptFile(new File(request[4]), new File(request[5]), new CipherOptions());
+                case "ENCRYPT-INLINE":
+                    return "OK " + inline(new HillCipherEngine(key).encrypt(inlinePayload(request)));
+                case "DECRYPT-INLINE":
+                    return "OK " + inline(new HillDecipherEngine(key).decrypt(inlinePayload(request)));
+                default:
+                    throw new IllegalArgumentException("Unknown request: " + request[0]);
+            }
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return "ERROR The file '" + e.getMessage() + "' was not found";
+        } catch (NumberFormatException e) {
+            return "ERROR " + (e.getMessage() == null ? "Malformed number" : e.getMessage());
+        } catch (IllegalArgumentException | ArithmeticException | IOException e) {
+            return "ERROR " + e.getMessage();
+        } catch (RuntimeException e) {
+            return "ERROR " + e;
+        }
+    }
+
+    /**
+     * Returns the parsed key for the file, parsing it only when it is new or was modified.
+     * A modified key file replaces its old entry.
+     */
+    private HillKey key(int radix, int blocksize, File keyFile) throws IOException {
+        Path path = keyFile.toPath().toRealPath();
+        String id = radix + ":" + blocksize + ":" + path;
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        LoadedKey loaded = keys.get(id);
+        if (loaded == null || loaded.modified != modified) {
+            loaded = new LoadedKey(modified, HillKey.read(radix, blocksize, path.toFile()));
+            keys.put(id, loaded);
+        }
+        return loaded.key;
+    }
+
+    private static void checkLength(String[] request, int length) {
+        if (request.length < length) throw new IllegalArgumentException(request[0] + " needs <radix> <blocksize> <keyfile> <in> <out>");
+    }
+
+    private static ByteBuffer inlinePayload(String[] request) {
+        String numbers = String.join(" ", Arrays.asList(request).subList(4, request.length));
+        return ByteBuffer.wrap(numbers.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String inline(ByteBuffer result) {
+        return StandardCharsets.US_ASCII.decode(result).toString();
+    }
+
+    private static final class LoadedKey {
+        final long modified;
+        final HillKey key;
+
+        LoadedKey(long modified, HillKey key) {
+            this.modified = modified;
+            this.key = key;
+        }
+    }
+
+    private static final class Job {
+        final String[] request;
+        final String keyId;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Job(String[] request) {
+            this.request = request;
+            this.keyId = request.length > 3 ? request[1] + ":" + request[2] + ":" + request[3] : "";
+        }
+    }
+}
@@ -0,0 +1,358 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decrypts cipher text, decimal or in the {@link BinaryCipherFormat}, with one
+ * {@link HillKey}. Malformed input is reported like in {@link HillCipherEngine}.
+ */
+class HillDecipherEngine {
+    final HillKey key;
+    final int radix;
+    final int size;
+    final BlockKernel kernel;
+    final CipherStats stats;
+
+    HillDecipherEngine(HillKey key) {
+        this(key, CipherStats.DISABLED);
+    }
+
+    /**
+     * An engine that records the phases of everything it decrypts into {@code stats}.
+     */
+    HillDecipherEngine(HillKey key, CipherStats stats) {
+        this.key = key;
+        this.stats = stats;
+        this.radix = key.radix;
+        this.size = key.blocksize;
+        this.kernel = key.kernel;
+        HillCipherEngine.checkPaddingFits(radix, size);
+    }
+
+    /**
+     * Decrypts everything readable from {@code in} into {@code out} as decimal text.
+     * Neither stream is closed. Returns the number of plaintext numbers written.
+     */
+    long decrypt(InputStream in, OutputStream out) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, NumberTokenizer.BUFFER_SIZE);
+        buffered.mark(BinaryCipherFormat.HEADER_SIZE);
+        byte[] header = buffered.readNBytes(BinaryCipherFormat.HEADER_SIZE);
+        BinaryCipherFormat format = BinaryCipherFormat.read(ByteBuffer.wrap(header));
+        if (format == null) buffered.reset();
+        else checkFormat(format);
+
+        NumberTokenizer tokenizer = new NumberTokenizer(Channels.newChannel(buffered)).radix(radix);
+        NumberWriter writer = new NumberWriter(out);
+        long decrypted = decrypt(format == null ? tokenizer : tokenizer.binary(format.symbolWidth), writer, format);
+        writer.flush();
+        out.flush();
+        return decrypted;
+    }
+
+    long decrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        return decrypt(Channels.newInputStream(in), Channels.newOutputStream(out));
+    }
+
+    /**
+     * Decrypts the remaining bytes of {@code cipherText} and returns the plain text.
+     */
+    ByteBuffer decrypt(ByteBuffer cipherText) throws IOException {
+        ByteBuffer input = cipherText.duplicate();
+        BinaryCipherFormat format = BinaryCipherFormat.read(input);
+        NumberTokenizer tokenizer = new NumberTokenizer(input).radix(radix);
+        if (format != null) {
+            checkFormat(format);
+            tokenizer.binary(format.symbolWidth);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.remaining() + 16);
+        NumberWriter writer = new NumberWriter(out);
+        decrypt(tokenizer, writer, format);
+        writer.close();
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Decrypts a {@link FramedCipherFormat} stream frame by frame, writing and flushing the
+     * plaintext of every frame as soon as it has arrived. Memory is bounded by the largest
+     * frame and the input is only read forward. Neither stream is closed. Returns the number
+     * of plaintext numbers written.
+     */
+    long decryptFramed(InputStream in, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, NumberTokenizer.BUFFER_SIZE));
+        FramedCipherFormat format = FramedCipherFormat.readHeader(data);
+        if (format.radix != radix || format.blocksize != size) {
+            throw new IllegalArgumentException("The cipher stream was written with radix " + format.radix + " and block size " + format.blocksize + ".");
+        }
+        if (format.symbolWidth != BinaryCipherFormat.symbolWidth(radix)) {
+            throw new IllegalArgumentException("The cipher stream is corrupt.");
+        }
+        NumberWriter writer = new NumberWriter(out);
+        byte[] bytes = new byte[0];
+        int[] loadedNumbers = new int[0];
+        int[] decrypted = new int[0];
+        long numOfNumbersWritten = 0;
+        while (true) {
+            int symbols;
+            int padding;
+            try {
+                symbols = data.readInt();
+                padding = data.readUnsignedShort();
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("The cipher stream ends without its end frame, it has been cut off.");
+            }
+            if (symbols == 0) break;
+            if (symbols < 0 || symbols % size != 0 || symbols > FramedCipherFormat.MAX_FRAME_SYMBOLS) {
+                throw new IllegalArgumentException("A frame of the cipher stream is corrupt.");
+            }
+            if (loadedNumbers.length < symbols) {
+                bytes = new byte[symbols * format.symbolWidth];
+                loadedNumbers = new int[symbols];
+                decrypted = new int[symbols];
+            }
+            long start = stats.start();
+            try {
+                data.readFully(bytes, 0, symbols * format.symbolWidth);
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("The cipher stream ends in the middle of a frame, it has been cut off.");
+            }
+            format.unpack(bytes, symbols, loadedNumbers, radix);
+            stats.stop(CipherStats.Phase.TOKENIZE, start);
+            start = stats.start();
+            kernel.apply(loadedNumbers, decrypted, symbols / size);
+            stats.stop(CipherStats.Phase.KERNEL, start);
+            int lastBlockLength = removePadding(Arrays.copyOfRange(decrypted, symbols - size, symbols), null);
+            if (size - lastBlockLength != padding) {
+                throw new IllegalArgumentException("The padding of a frame is corrupt, check that the key and <blocksize> are correct.");
+            }
+            start = stats.start();
+            writer.write(decrypted, 0, symbols - size + lastBlockLength);
+            writer.flush();
+            out.flush();
+            stats.stop(CipherStats.Phase.WRITE, start);
+            numOfNumbersWritten += symbols - size + lastBlockLength;
+            stats.addBytesParsed(FramedCipherFormat.FRAME_HEADER_SIZE + (long) symbols * format.symbolWidth);
+            stats.addBlocks(symbols / size);
+        }
+        writer.flush();
+        out.flush();
+        return numOfNumbersWritten;
+    }
+
+    /**
+     * Decrypts {@code cipherFile}, which may be decimal text or in the
+     * {@link BinaryCipherFormat}, into {@code decryptedFile}. With several threads,
+     * blocks are decrypted fork-join in parallel, or, if pipelined, reading, decryption
+     * and writing run concurrently in a {@link BlockPipeline}.
+     */
+    long decryptFile(File cipherFile, File decryptedFile, CipherOptions options) throws IOException {
+        int threads = options.threads;
+        boolean memoryMapped = options.memoryMapped;
+        try (FileChannel channel = new FileInputStream(cipherFile).getChannel();
+             NumberWriter writer = new NumberWriter(new FileOutputStream(decryptedFile))) {
+            BinaryCipherFormat format = BinaryCipherFormat.read(channel);
+            if (format != null) {
+                checkFormat(format);
+                if ((channel.size() - BinaryCipherFormat.HEADER_SIZE) % format.symbolWidth != 0) {
+                    throw new IllegalArgumentException("The binary cipher file is corrupt.");
+                }
+            }
+            if (options.pipelined) {
+                return countStats(channel, writer, new BlockPipeline(kernel, threads, stats).decrypt(openTokenizer(channel, format, memoryMapped), writer,
+                        lastBlock -> removePadding(lastBlock, format)));
+            }
+            if (threads > 1) return countStats(channel, writer, decryptParallel(channel, writer, threads, format));
+            return countStats(channel, writer, decrypt(openTokenizer(channel, format, memoryMapped), writer, format));
+        }
+    }
+
+    /**
+     * Decrypts only the plaintext numbers {@code fromSymbol} (inclusive) to {@code toSymbol}
+     * (exclusive, clamped to the end) into {@code decryptedFile}. Decimal cipher files are
+     * entered at the nearest indexed block before the range through their {@link BlockIndex};
+     * binary ones are entered at the first block directly. Returns the number of numbers written.
+     */
+    long decryptRangeFile(File cipherFile, File decryptedFile, long fromSymbol, long toSymbol) throws IOException {
+        try (FileChannel channel = new FileInputStream(cipherFile).getChannel();
+             NumberWriter writer = new NumberWriter(new FileOutputStream(decryptedFile))) {
+            BinaryCipherFormat format = BinaryCipherFormat.read(channel);
+            long firstBlock = Math.max(0, fromSymbol) / size;
+            long blocks;
+            int padding;
+            long start;
+            long skippedNumbers = 0;
+            if (format != null) {
+                checkFormat(format);
+                blocks = (channel.size() - BinaryCipherFormat.HEADER_SIZE) / format.symbolWidth / size;
+                padding = format.padding;
+                start = BinaryCipherFormat.HEADER_SIZE + firstBlock * size * format.symbolWidth;
+            } else {
+                BlockIndex index = readIndex(cipherFile, channel);
+                blocks = index.blocks;
+                padding = index.padding;
+                long indexedBlock = index.indexedBlock(firstBlock);
+                start = index.offset(indexedBlock);
+                skippedNumbers = (firstBlock - indexedBlock) * size;
+            }
+            long symbols = blocks * size - padding;
+            toSymbol = Math.min(toSymbol, symbols);
+            if (fromSymbol < 0 || fromSymbol >= toSymbol) {
+                throw new IllegalArgumentException("The range is empty or outside the " + symbols + " plaintext numbers.");
+            }
+
+            channel.position(start);
+            NumberTokenizer tokenizer = new NumberTokenizer(channel).radix(radix);
+            if (format != null) tokenizer.binary(format.symbolWidth);
+            int[] loadedNumbers = new int[HillCipherEngine.BATCH_BLOCKS * size];
+            int[] decrypted = new int[HillCipherEngine.BATCH_BLOCKS * size];
+            while (skippedNumbers > 0) {
+                int read = tokenizer.read(loadedNumbers, 0, (int) Math.min(loadedNumbers.length, skippedNumbers));
+                if (read == 0) throw new IllegalArgumentException("The cipher file is shorter than its index says.");
+                skippedNumbers -= read;
+            }
+            long lastBlock = (toSymbol - 1) / size;
+            for (long block = firstBlock; block <= lastBlock; ) {
+                int count = (int) Math.min(HillCipherEngine.BATCH_BLOCKS, lastBlock - block + 1);
+                if (tokenizer.read(loadedNumbers, 0, count * size) != count * size) {
+                    throw new IllegalArgumentException("The cipher file is shorter than its index says.");
+                }
+                long timer = stats.start();
+                kernel.apply(loadedNumbers, decrypted, count);
+                stats.stop(CipherStats.Phase.KERNEL, timer);
+                stats.addBlocks(count);
+                if (block + count == blocks) {
+                    int lastBlockLength = removePadding(Arrays.copyOfRange(decrypted, (count - 1) * size, count * size), format);
+                    if (size - lastBlockLength != padding) {
+                        throw new IllegalArgumentException("The padding of the last block is corrupt, check that the key and <blocksize> are correct.");
+                    }
+                }
+                long batchStart = block * size;
+                timer = stats.start();
+                writer.write(decrypted, (int) Math.max(0, fromSymbol - batchStart), (int) Math.min(count * size, toSymbol - batchStart));
+                stats.stop(CipherStats.Phase.WRITE, timer);
+                block += count;
+            }
+            stats.addBytesParsed(channel.position() - start);
+            stats.addBytesWritten(writer.bytesWritten());
+            return toSymbol - fromSymbol;
+        }
+    }
+
+    /**
+     * Records the input, output and block counts of a whole-file run, returning {@code decrypted}.
+     */
+    private long countStats(FileChannel channel, NumberWriter writer, long decrypted) throws IOException {
+        stats.addBytesParsed(channel.size());
+        stats.addBytesWritten(writer.bytesWritten());
+        stats.addBlocks(decrypted / size + 1);
+        return decrypted;
+    }
+
+    private BlockIndex readIndex(File cipherFile, FileChannel channel) throws IOException {
+        File indexFile = BlockIndex.indexFile(cipherFile);
+        if (!indexFile.isFile()) {
+            throw new IllegalArgumentException("There is no block index '" + indexFile.getName() + "', encrypt with --index N to write one.");
+        }
+        BlockIndex index = BlockIndex.read(indexFile);
+        if (index.blocksize != size || index.cipherLength != channel.size()) {
+            throw new IllegalArgumentException("The block index '" + indexFile.getName() + "' does not belong to this cipher file.");
+        }
+        return index;
+    }
+
+    long decrypt(NumberTokenizer tokenizer, NumberWriter writer, BinaryCipherFormat format) throws IOException {
+        int[] loadedNumbers = new int[HillCipherEngine.BATCH_BLOCKS * size];
+        int[] decrypted = new int[HillCipherEngine.BATCH_BLOCKS * size];
+        int[] heldBackBlock = new int[size];
+        long blocksRead = 0;
+        int read;
+        do {
+            long start = stats.start();
+            read = tokenizer.read(loadedNumbers, 0, loadedNumbers.length);
+            stats.stop(CipherStats.Phase.TOKENIZE, start);
+            int blocks = read / size;
+            if (blocks == 0) continue;
+            start = stats.start();
+            kernel.apply(loadedNumbers, decrypted, blocks);
+            stats.stop(CipherStats.Phase.KERNEL, start);
+            start = stats.start();
+            if (blocksRead > 0) writer.write(heldBackBlock, 0, size);
+            writer.write(decrypted, 0, (blocks - 1) * size);
+            stats.stop(CipherStats.Phase.WRITE, start);
+            System.arraycopy(decrypted, (blocks - 1) * size, heldBackBlock, 0, size);
+            blocksRead += blocks;
+        } while (read == loadedNumbers.length);
+        checkWholeBlocks(read % size != 0 || blocksRead == 0);
+        int lastBlockLength = removePadding(heldBackBlock, format);
+        writer.write(heldBackBlock, 0, lastBlockLength);
+        return (blocksRead - 1) * size + lastBlockLength;
+    }
+
+    private NumberTokenizer openTokenizer(FileChannel channel, BinaryCipherFormat format, boolean memoryMapped) throws IOException {
+        long start = format == null ? 0 : BinaryCipherFormat.HEADER_SIZE;
+        NumberTokenizer tokenizer;
+        if (memoryMapped) {
+            tokenizer = new MappedNumberTokenizer(channel, start, channel.size()).radix(radix);
+        } else {
+            channel.position(start);
+            tokenizer = new NumberTokenizer(channel).radix(radix);
+        }
+        return format == null ? tokenizer : tokenizer.binary(format.symbolWidth);
+    }
+
+    private void checkFormat(BinaryCipherFormat format) {
+        if (format.radix != radix || format.blocksize != size) {
+            throw new IllegalArgumentException("The binary cipher file was written with radix " + format.radix + " and block size " + format.blocksize + ".");
+        }
+        if (format.symbolWidth != BinaryCipherFormat.symbolWidth(radix)) {
+            throw new IllegalArgumentException("The binary cipher file is corrupt.");
+        }
+    }
+
+    private long decryptParallel(FileChannel channel, NumberWriter writer, int threads, BinaryCipherFormat format) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            ParallelBlockProcessor processor = new ParallelBlockProcessor(channel, threads, kernel, format, stats);
+            long numbersRead = processor.countNumbers(pool);
+            checkWholeBlocks(numbersRead % size != 0 || numbersRead == 0);
+            long blocksBeforeLast = numbersRead / size - 1;
+            processor.process(pool, blocksBeforeLast, writer);
+            int[] lastBlock = new int[size];
+            decryptArray(processor.readNumbers(blocksBeforeLast * size, size), lastBlock);
+            int lastBlockLength = removePadding(lastBlock, format);
+            writer.write(lastBlock, 0, lastBlockLength);
+            return blocksBeforeLast * size + lastBlockLength;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void checkWholeBlocks(boolean incomplete) {
+        if (incomplete) {
+            throw new IllegalArgumentException("The number of letter-numbers in the input is not a multiple of <blocksize>.");
+        }
+    }
+
+    /**
+     * Returns how many numbers of the final block are real data,
+     * the last number of the block being the amount of padding that was added.
+     * Binary cipher files also record the padding in their header.
+     */
+    int removePadding(int[] lastBlock, BinaryCipherFormat format) {
+        long start = stats.start();
+        int paddingAdded = lastBlock[size - 1];
+        if (paddingAdded < 1 || paddingAdded > size || (format != null && format.padding != paddingAdded)) {
+            throw new IllegalArgumentException("The padding of the last block is corrupt, check that the key and <blocksize> are correct.");
+        }
+        stats.stop(CipherStats.Phase.PADDING, start);
+        return size - paddingAdded;
+    }
+
+    private void decryptArray(int[] loadedNumbers, int[] decrypted) {
+        kernel.apply(loadedNumbers, 0, decrypted, 0);
+    }
+}
@@ -0,0 +1,243 @@
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates a plaintext corpus of a given size and runs HillKeys, HillCipher and
+ * HillDecipher on it as separate processes, like a user would, checking that the
+ * round trip gives back the plaintext byte for byte.
+ *
+ * For every stage it records the wall time, the peak resident set size (VmHWM
+ * from /proc, so only on Linux; -1 elsewhere) and the throughput, and prints a
+ * JSON report so that runs can be compared.
+ */
+public class HillHarness {
+    static final long RSS_POLL_MILLIS = 10;
+
+    private final List<String> stages = new ArrayList<>();
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            throw new IllegalArgumentException("Arguments must be: <radix> <blocksize> <size, e.g. 100M or 10G> <workdir>"
+                    + " [--seed N] [--cipher-options \"...\"] [--decipher-options \"...\"] [--report FILE] [--keep]");
+        }
+        try {
+            int radix = Integer.parseInt(args[0]);
+            int size = Integer.parseInt(args[1]);
+            long bytes = parseSize(args[2]);
+            File workDirectory = new File(args[3]);
+            long seed = System.nanoTime();
+            List<String> cipherOptions = new ArrayList<>();
+            List<String> decipherOptions = new ArrayList<>();
+            String report = null;
+            boolean keep = false;
+            for (int i = 4; i < args.length; i++) {
+                if (args[i].equals("--seed") && i + 1 < args.length) seed = Long.parseLong(args[++i]);
+                else if (args[i].equals("--cipher-options") && i + 1 < args.length) cipherOptions = splitOptions(args[++i]);
+                else if (args[i].equals("--decipher-options") && i + 1 < args.length) decipherOptions = splitOptions(args[++i]);
+                else if (args[i].equals("--report") && i + 1 < args.length) report = args[++i];
+                else if (args[i].equals("--keep")) keep = true;
+                else throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            if (!workDirectory.isDirectory() && !workDirectory.mkdirs()) {
+                throw new IllegalArgumentException("The directory '" + workDirectory + "' could not be created.");
+            }
+            boolean succeeded = new HillHarness().run(radix, size, bytes, seed, workDirectory, cipherOptions, decipherOptions, report, keep);
+            if (!succeeded) System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("Args <radix>, <blocksize>, <size> and --seed must be integers");
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    boolean run(int radix, int size, long bytes, long seed, File workDirectory, List<String> cipherOptions,
+                List<String> decipherOptions, String report, boolean keep) throws IOException, InterruptedException {
+        File plain = new File(workDirectory, "plain.txt");
+        File key = new File(workDirectory, "key.txt");
+        File cipher = new File(workDirectory, "cipher");
+        File decrypted = new File(workDirectory, "decrypted.txt");
+
+        long start = System.nanoTime();
+        long plainBytes = generate(plain, radix, bytes, seed);
+        addStage("generate", System.nanoTime() - start, -1, 0, plainBytes, 0);
+
+        boolean succeeded = runStage("keys", workDirectory, null, null,
+                "HillKeys", Integer.toString(radix), Integer.toString(size), key.getPath())
+                && runStage("encrypt", workDirectory, plain, cipher, concat(concat(
+                "HillCipher", Integer.toString(radix), Integer.toString(size), key.getPath(), plain.getPath(), cipher.getPath()), cipherOptions))
+                && runStage("decrypt", workDirectory, cipher, decrypted, concat(concat(
+                "HillDecipher", Integer.toString(radix), Integer.toString(size), HillKeys.inverseKeyFile(key).getPath(), cipher.getPath(), decrypted.getPath()), decipherOptions));
+
+        String roundTrip;
+        if (!succeeded) {
+            roundTrip = "failed";
+        } else {
+            start = System.nanoTime();
+            long mismatch = firstDifference(plain, decrypted);
+            addStage("compare", System.nanoTime() - start, -1, 0, plainBytes, 0);
+            roundTrip = mismatch < 0 ? "ok" : "mismatch at byte " + mismatch;
+            succeeded = mismatch < 0;
+        }
+
+        String json = String.format(Locale.ROOT, "{\"radix\":%d,\"blocksize\":%d,\"plain_bytes\":%d,\"seed\":%d,\"round_trip\":\"%s\",\"stages\":[%s]}",
+                radix, size, plainBytes, seed, roundTrip, String.join(",", stages));
+        if (report == null) {
+            System.out.println(json);
+        } else {
+            try (Writer out = new FileWriter(report)) {
+                out.write(json);
+                out.write('\n');
+            }
+        }
+        if (!succeeded) System.err.println("Round trip " + roundTrip + ", see the logs in " + workDirectory);
+        if (!keep && succeeded) {
+            for (File file : new File[]{plain, cipher, decrypted, BlockIndex.indexFile(cipher)}) Files.deleteIfExists(file.toPath());
+        }
+        return succeeded;
+    }
+
+    /**
+     * Writes random numbers below the radix until the file holds at least {@code bytes} bytes.
+     */
+    static long generate(File plain, int radix, long bytes, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] numbers = new int[4096];
+        try (NumberWriter writer = new NumberWriter(new FileOutputStream(plain))) {
+            while (writer.bytesWritten() < bytes) {
+                for (int i = 0; i < numbers.length; i++) numbers[i] = random.nextInt(radix);
+                int count = numbers.length;
+                long remaining = bytes - writer.bytesWritten();
+                if (remaining < count) count = (int) Math.max(1, remaining / 2);
+                writer.write(numbers, 0, count);
+            }
+            return writer.bytesWritten();
+        }
+    }
+
+    /**
+     * Runs one tool in a child JVM with the class path of this one, its output going to
+     * {@code <stage>.log}, and records its wall time, peak RSS and throughput.
+     */
+    private boolean runStage(String stage, File workDirectory, File input, File output, List<String> command)
+            throws IOException, InterruptedException {
+        return runStage(stage, workDirectory, input, output, command.toArray(new String[0]));
+    }
+
+    private boolean runStage(String stage, File workDirectory, File input, File output, String... arguments)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path")));
+        command.addAll(Arrays.asList(arguments));
+        File log = new File(workDirectory, stage + ".log");
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        long peakRssKb = -1;
+        while (!process.waitFor(RSS_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            peakRssKb = Math.max(peakRssKb, peakRssKb(process.pid()));
+        }
+        long nanos = System.nanoTime() - start;
+        long inputBytes = input == null ? 0 : input.length();
+        long outputBytes = output == null ? 0 : output.length();
+        addStage(stage, nanos, peakRssKb, process.exitValue(), inputBytes, outputBytes);
+        if (process.exitValue() != 0) {
+            System.err.println(stage + " exited with " + process.exitValue() + ":");
+            System.err.println(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The high water mark of the resident set of a running process in kB, or -1 if unknown.
+     */
+    static long peakRssKb(long pid) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc", Long.toString(pid), "status"))) {
+                if (line.startsWith("VmHWM:")) return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        } catch (IOException | RuntimeException e) {
+            // the process has just exited, or there is no /proc
+        }
+        return -1;
+    }
+
+    private void addStage(String stage, long nanos, long peakRssKb, int exitCode, long inputBytes, long outputBytes) {
+        double seconds = nanos / 1e9;
+        stages.add(String.format(Locale.ROOT, "{\"stage\":\"%s\",\"seconds\":%.6f,\"peak_rss_kb\":%d,\"exit_code\":%d,"
+                        + "\"input_bytes\":%d,\"output_bytes\":%d,\"mb_per_second\":%.3f}",
+                stage, seconds, peakRssKb, exitCode, inputBytes, outputBytes, Math.max(inputBytes, outputBytes) / 1e6 / seconds));
+    }
+
+    /**
+     * Returns the offset of the first byte at which the files differ, or -1 if they are equal.
+     */
+    static long firstDifference(File a, File b) throws IOException {
+        try (InputStream inA = new BufferedInputStream(new FileInputStream(a), 1 << 16);
+             InputStream inB = new BufferedInputStream(new FileInputStream(b), 1 << 16)) {
+            byte[] bufferA = new byte[1 << 16];
+            byte[] bufferB = new byte[1 << 16];
+            long offset = 0;
+            while (true) {
+                int readA = inA.readNBytes(bufferA, 0, bufferA.length);
+                int readB = inB.readNBytes(bufferB, 0, bufferB.length);
+                int mismatch = Arrays.mismatch(bufferA, 0, readA, bufferB, 0, readB);
+                if (mismatch >= 0) return offset + mismatch;
+                if (readA == 0) return -1;
+                offset += readA;
+            }
+        }
+    }
+
+    /**
+     * Parses sizes like 1048576, 512K, 100M or 10G (powers of 1024).
+     */
+    static long parseSize(String size) {
+        String digits = size.toUpperCase(Locale.ROOT);
+        long unit = 1;
+        if (digits.endsWith("K")) unit = 1L << 10;
+        else if (digits.endsWith("M")) unit = 1L << 20;
+        else if (digits.endsWith("G")) unit = 1L << 30;
+        if (unit > 1) digits = digits.substring(0, digits.length() - 1);
+        long bytes = Long.parseLong(digits) * unit;
+        if (bytes < 1) throw new IllegalArgumentException("<size> must be positive");
+        return bytes;
+    }
+
+    private static List<String> splitOptions(String options) {
+        return options.trim().isEmpty() ? new ArrayList<>() : Arrays.asList(options.trim().split("\\s+"));
+    }
+
+    private static List<String> concat(String... arguments) {
+        return new ArrayList<>(Arrays.asList(arguments));
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+}
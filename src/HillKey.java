@@ -0,0 +1,94 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A parsed and validated key matrix together with its block kernel.
+ *
+ * Keys are immutable: they are parsed and checked for invertibility once, and can
+ * then be shared, kernel included, by any number of engines and threads. Engines
+ * keep no state between calls either, so the same holds for them. The inverse key
+ * is computed on first use and remembered.
+ */
+final class HillKey {
+    final int radix;
+    final int blocksize;
+    private final int[][] matrix;
+    final BlockKernel kernel;
+    private volatile HillKey inverse;
+
+    private HillKey(int radix, int[][] matrix) {
+        this.radix = radix;
+        this.blocksize = matrix.length;
+        this.matrix = matrix;
+        this.kernel = BlockKernel.forKey(matrix, radix);
+    }
+
+    /**
+     * Creates a key from a matrix, which is copied with its entries reduced modulo the
+     * radix, so that every kernel sees entries in {@code [0, radix)}.
+     *
+     * @throws ArithmeticException if the matrix is not invertible modulo the radix
+     */
+    static HillKey of(int radix, int[][] matrix) {
+        if (radix < 1) throw new IllegalArgumentException("The radix must be positive");
+        int[][] copy = new int[matrix.length][];
+        for (int row = 0; row < matrix.length; row++) {
+            if (matrix[row].length != matrix.length) throw new IllegalArgumentException("The key matrix is not square...");
+            copy[row] = new int[matrix.length];
+            for (int col = 0; col < matrix.length; col++) copy[row][col] = Math.floorMod(matrix[row][col], radix);
+        }
+        if (!ModularMatrix.isInvertible(copy, radix)) {
+            throw new ArithmeticException("The key matrix is not invertible modulo " + radix);
+        }
+        return new HillKey(radix, copy);
+    }
+
+    /**
+     * Parses a key in the key file format: one row per line, numbers separated by spaces.
+     *
+     * @throws IllegalArgumentException if the key does not match {@code blocksize}
+     * @throws ArithmeticException if the key is not invertible modulo the radix
+     */
+    static HillKey parse(int radix, int blocksize, String keyString) {
+        int[][] matrix = new int[blocksize][];
+        int rows = 0;
+        for (String line : keyString.split("\\R")) {
+            if (line.trim().isEmpty()) continue;
+            if (rows == blocksize) throw new IllegalArgumentException("The key does not match <blocksize>");
+            String[] numbers = line.trim().split("\\s+");
+            if (numbers.length != blocksize) throw new IllegalArgumentException("The key does not match <blocksize>");
+            matrix[rows] = new int[blocksize];
+            for (int col = 0; col < blocksize; col++) {
+                try {
+                    matrix[rows][col] = Integer.parseInt(numbers[col]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("One or more key matrix elements cannot be parsed as Integers..");
+                }
+            }
+            rows++;
+        }
+        if (rows != blocksize) throw new IllegalArgumentException("The key does not match <blocksize>");
+        return of(radix, matrix);
+    }
+
+    static HillKey read(int radix, int blocksize, File keyFile) throws IOException {
+        return parse(radix, blocksize, new String(Files.readAllBytes(keyFile.toPath()), StandardCharsets.UTF_8));
+    }
+
+    HillKey inverse() {
+        HillKey result = inverse;
+        if (result == null) {
+            result = new HillKey(radix, ModularMatrix.inverse(matrix, radix));
+            result.inverse = this;
+            inverse = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return HillKeys.formatKey(matrix);
+    }
+}
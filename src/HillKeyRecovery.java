@@ -0,0 +1,288 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Recovers a key from a plaintext file and its cipher file, to check how fast our
+ * keys fall to known plaintext.
+ *
+ * The cipher text of a block is {@code K * p}, so for {@code blocksize} plaintext
+ * blocks forming an invertible matrix P with cipher blocks C, the key is
+ * {@code C * P^-1}. With {@code --brute-force} every row of the key is instead
+ * searched exhaustively on a ForkJoinPool: each candidate row k is run through a
+ * BlockKernel built from the plaintext blocks, which yields {@code k . p} for all of
+ * them at once, and compared to the matching row of the cipher text.
+ *
+ * Only full plaintext blocks are used; the last cipher block holds padding.
+ */
+public class HillKeyRecovery {
+    static final int MAX_PAIRS = 1 << 16;
+    static final long MAX_BRUTE_FORCE_ROWS = 1L << 36;
+    static final int CANDIDATE_BATCH = 4096;
+    static final int SAMPLED_BLOCK_SETS = 10000;
+
+    private final int radix;
+    private final int size;
+    private final int[] plain;
+    private final int[] cipher;
+    private final int pairs;
+
+    HillKeyRecovery(int radix, int size, int[] plain, int[] cipher) {
+        this.radix = radix;
+        this.size = size;
+        this.pairs = Math.min(plain.length, cipher.length) / size;
+        this.plain = plain;
+        this.cipher = cipher;
+        for (int i = 0; i < pairs * size; i++) plain[i] = Math.floorMod(plain[i], radix);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) throw new IllegalArgumentException("Arguments must be: <radix> <blocksize> <plainfile> <cipherfile> [--brute-force] [--threads N] [--out keyfile]");
+        try {
+            int radix = Integer.parseInt(args[0]);
+            int size = Integer.parseInt(args[1]);
+            boolean bruteForce = false;
+            int threads = Runtime.getRuntime().availableProcessors();
+            File keyFile = null;
+            for (int i = 4; i < args.length; i++) {
+                if (args[i].equals("--brute-force")) bruteForce = true;
+                else if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+                else if (args[i].equals("--out") && i + 1 < args.length) keyFile = new File(args[++i]);
+                else throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            if (radix < 2 || size < 1) throw new IllegalArgumentException("<radix> must be at least 2 and <blocksize> at least 1");
+
+            int[] plain = readPlainBlocks(new File(args[2]), size);
+            int[] cipher = readCipherNumbers(new File(args[3]), radix, size, plain.length);
+            HillKeyRecovery recovery = new HillKeyRecovery(radix, size, plain, cipher);
+            System.out.println("Known plaintext: " + recovery.pairs + " blocks");
+
+            long start = System.nanoTime();
+            int[][] key = bruteForce ? recovery.bruteForce(threads) : recovery.solve();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (key == null) {
+                System.err.println("No key matches all blocks.");
+                System.exit(1);
+            }
+            System.out.printf("Recovered the key in %.3f s%n", seconds);
+            System.out.println(HillKeys.formatKey(key));
+            if (!ModularMatrix.isInvertible(key, radix)) System.out.println("The recovered key is not invertible modulo " + radix);
+            if (keyFile != null) HillKeys.writeKeyToFile(key, keyFile);
+        } catch (NumberFormatException e) {
+            System.err.print("Args <radix>, <blocksize> and --threads must be integers, and the files must contain numbers: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (FileNotFoundException e) {
+            System.err.println(e.getMessage() + ". Shutting down...");
+            System.exit(1);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Reads the full plaintext blocks, at most {@link #MAX_PAIRS} of them.
+     */
+    private static int[] readPlainBlocks(File plainFile, int size) throws IOException {
+        try (FileChannel channel = new FileInputStream(plainFile).getChannel()) {
+            int[] numbers = new int[MAX_PAIRS * size];
+            int read = new NumberTokenizer(channel).read(numbers, 0, numbers.length);
+            if (read < size) throw new IllegalArgumentException("The plain text does not contain a full block.");
+            return Arrays.copyOf(numbers, read - read % size);
+        }
+    }
+
+    /**
+     * Reads the cipher text of {@code count} plaintext numbers, decimal or in the {@link BinaryCipherFormat}.
+     */
+    private static int[] readCipherNumbers(File cipherFile, int radix, int size, int count) throws IOException {
+        try (FileChannel channel = new FileInputStream(cipherFile).getChannel()) {
+            BinaryCipherFormat format = BinaryCipherFormat.read(channel);
+            NumberTokenizer tokenizer = new NumberTokenizer(channel);
+            if (format != null) {
+                if (format.radix != radix || format.blocksize != size) {
+                    throw new IllegalArgumentException("The binary cipher file was written with radix " + format.radix + " and block size " + format.blocksize + ".");
+                }
+                channel.position(BinaryCipherFormat.HEADER_SIZE);
+                tokenizer.binary(format.symbolWidth);
+            }
+            int[] numbers = new int[count];
+            int read = tokenizer.read(numbers, 0, count);
+            if (read < count) throw new IllegalArgumentException("The cipher text is shorter than the plain text.");
+            return numbers;
+        }
+    }
+
+    /**
+     * Solves {@code K = C * P^-1} for a set of blocks whose plaintext matrix is invertible,
+     * trying consecutive blocks first and then random sets. Returns null if no set yields
+     * a key that matches all blocks.
+     */
+    int[][] solve() {
+        if (pairs < size) throw new IllegalArgumentException("At least " + size + " full plaintext blocks are needed.");
+        int[] blocks = new int[size];
+        for (int first = 0; first + size <= pairs && first < SAMPLED_BLOCK_SETS; first++) {
+            for (int i = 0; i < size; i++) blocks[i] = first + i;
+            int[][] key = solve(blocks);
+            if (key != null) return key;
+        }
+        Random random = new Random(pairs);
+        for (int attempt = 0; attempt < SAMPLED_BLOCK_SETS; attempt++) {
+            for (int i = 0; i < size; i++) blocks[i] = random.nextInt(pairs);
+            int[][] key = solve(blocks);
+            if (key != null) return key;
+        }
+        return null;
+    }
+
+    private int[][] solve(int[] blocks) {
+        int[][] p = new int[size][size];
+        int[][] c = new int[size][size];
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                p[row][col] = plain[blocks[col] * size + row];
+                c[row][col] = Math.floorMod(cipher[blocks[col] * size + row], radix);
+            }
+        }
+        int[][] pInverse = ModularMatrix.inverse(p, radix);
+        if (pInverse == null) return null;
+        int[][] key = ModularMatrix.multiply(c, pInverse, radix);
+        for (int row = 0; row < size; row++) {
+            if (!matchesAllBlocks(key[row], row)) return null;
+        }
+        return key;
+    }
+
+    /**
+     * Searches every row of the key exhaustively on {@code threads} threads and prints
+     * the number of candidate rows tried per second. Returns null if some row has no
+     * candidate, or more than one, matching all blocks.
+     */
+    int[][] bruteForce(int threads) {
+        long rowCandidates = 1;
+        for (int i = 0; i < size; i++) {
+            rowCandidates *= radix;
+            if (rowCandidates > MAX_BRUTE_FORCE_ROWS) {
+                throw new IllegalArgumentException("<radix>^<blocksize> is too large for a brute-force search, leave out --brute-force");
+            }
+        }
+        BlockKernel kernel = BlockKernel.forKey(screeningMatrix(), radix);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            int[][] key = new int[size][];
+            for (int row = 0; row < size; row++) {
+                List<int[]> matches = searchRow(pool, kernel, row, rowCandidates, threads);
+                if (matches.size() != 1) {
+                    System.out.println("Row " + row + " has " + matches.size() + " matching candidates");
+                    return null;
+                }
+                key[row] = matches.get(0);
+            }
+            return key;
+        } finally {
+            pool.shutdown();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long tried = rowCandidates * size;
+            System.out.printf("Tried %d candidate rows on %d threads in %.3f s (%.1f candidates/s)%n",
+                    tried, threads, seconds, tried / seconds);
+        }
+    }
+
+    /**
+     * The first plaintext blocks as rows, so that applying it to a candidate key row
+     * gives the cipher text that row would produce for each of those blocks.
+     */
+    private int[][] screeningMatrix() {
+        int[][] blocks = new int[size][size];
+        for (int block = 0; block < Math.min(size, pairs); block++) {
+            System.arraycopy(plain, block * size, blocks[block], 0, size);
+        }
+        return blocks;
+    }
+
+    private List<int[]> searchRow(ForkJoinPool pool, BlockKernel kernel, int row, long candidates, int threads) {
+        int screened = Math.min(size, pairs);
+        int[] expected = new int[screened];
+        for (int block = 0; block < screened; block++) expected[block] = Math.floorMod(cipher[block * size + row], radix);
+
+        long chunk = Math.max(CANDIDATE_BATCH, candidates / (threads * 8L) + 1);
+        List<ForkJoinTask<List<int[]>>> tasks = new ArrayList<>();
+        for (long first = 0; first < candidates; first += chunk) {
+            long from = first;
+            long to = Math.min(candidates, first + chunk);
+            tasks.add(pool.submit(() -> searchRange(kernel, row, expected, from, to)));
+        }
+        List<int[]> matches = new ArrayList<>();
+        for (ForkJoinTask<List<int[]>> task : tasks) {
+            try {
+                matches.addAll(task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Screens the candidate rows {@code from} until {@code to}, numbered as base-radix digits,
+     * in batches through the kernel, and checks the survivors against all blocks.
+     */
+    private List<int[]> searchRange(BlockKernel kernel, int row, int[] expected, long from, long to) {
+        List<int[]> matches = new ArrayList<>();
+        int[] digits = new int[size];
+        long rest = from;
+        for (int i = size - 1; i >= 0; i--) {
+            digits[i] = (int) (rest % radix);
+            rest /= radix;
+        }
+        int[] batch = new int[CANDIDATE_BATCH * size];
+        int[] products = new int[CANDIDATE_BATCH * size];
+        for (long first = from; first < to; first += CANDIDATE_BATCH) {
+            int count = (int) Math.min(CANDIDATE_BATCH, to - first);
+            for (int candidate = 0; candidate < count; candidate++) {
+                System.arraycopy(digits, 0, batch, candidate * size, size);
+                for (int i = size - 1; i >= 0 && ++digits[i] == radix; i--) digits[i] = 0;
+            }
+            kernel.apply(batch, products, count);
+            for (int candidate = 0, offset = 0; candidate < count; candidate++, offset += size) {
+                if (matchesScreen(products, offset, expected)) {
+                    int[] keyRow = Arrays.copyOfRange(batch, offset, offset + size);
+                    if (matchesAllBlocks(keyRow, row)) matches.add(keyRow);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static boolean matchesScreen(int[] products, int offset, int[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (products[offset + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean matchesAllBlocks(int[] keyRow, int row) {
+        for (int block = 0, offset = 0; block < pairs; block++, offset += size) {
+            long sum = 0;
+            for (int col = 0; col < size; col++) sum = (sum + (long) keyRow[col] * plain[offset + col]) % radix;
+            if (sum != Math.floorMod(cipher[offset + row], radix)) return false;
+        }
+        return true;
+    }
+}
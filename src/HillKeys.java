@@ -1,94 +1,124 @@
-import org.jscience.mathematics.number.LargeInteger;
-import org.jscience.mathematics.number.ModuloInteger;
-import org.jscience.mathematics.vector.DenseMatrix;
-
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 public class HillKeys {
     private static int radix = -1;
     private static int size = -1;
     private static String requestedFileName = "";
+    private static int count = -1;
     public static void main(String[] args){
-        if(args.length != 3){
-            throw new IllegalArgumentException("Arguments must be: <radix> <blocksize> <keyfile>");
+        if(args.length != 3 && !(args.length == 5 && args[3].equals("--count"))){
+            throw new IllegalArgumentException("Arguments must be: <radix> <blocksize> <keyfile> or <radix> <blocksize> <outdir> --count N");
         } else {
             parseArgs(args);
         }
         verifyArguments();
 
-        ModuloInteger.setModulus(LargeInteger.valueOf(radix));
-        DenseMatrix<ModuloInteger> generatedKey = null;
-        while(generatedKey == null || !isInvertible(generatedKey)){
-            generatedKey = generateRandomMatrix();
+        if (count > 0) {
+            generateBatch(new File(requestedFileName));
+            return;
         }
-        System.out.println(generatedKey.inverse().toString().replaceAll("[{]|[}]", ""));
+        int[][] generatedKey = generateInvertibleMatrix();
+        int[][] inverseKey = ModularMatrix.inverse(generatedKey, radix);
+        File keyFile = new File(requestedFileName);
+        writeKeyToFile(generatedKey, keyFile);
+        writeKeyToFile(inverseKey, inverseKeyFile(keyFile));
+        System.out.println(formatKey(generatedKey));
+        System.out.println();
+        System.out.println(formatKey(inverseKey));
         System.out.println();
-        writeKeyToFile(generatedKey);
     }
 
-    private static void writeKeyToFile(DenseMatrix<ModuloInteger> key) {
-        File output = new File(requestedFileName);
-        FileWriter encryptedWriter;
+    /**
+     * Generates {@code count} key pairs on all cores, each worker drawing from its own
+     * ThreadLocalRandom, and writes them as key<size>-<radix>-<n>.txt / invkey<size>-<radix>-<n>.txt.
+     */
+    private static void generateBatch(File outputDirectory) {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            System.err.println("The directory '" + outputDirectory + "' could not be created. Quitting...");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
         try {
-            encryptedWriter = new FileWriter(output);
-            for(int a = 0; a < key.getNumberOfColumns(); a++){
-                for(int b = 0; b < key.getNumberOfRows(); b++) {
-                    if(b != 0){
-                        encryptedWriter.write(" ");
-                        System.out.print(" ");
-                    }
-                    encryptedWriter.write(key.get(a, b).toString());
-                    System.out.print(key.get(a, b).toString());
-                }
-                if(a != key.getNumberOfColumns() - 1) {
-                    encryptedWriter.write("\n");
-                    System.out.println();
-                }
-            }
-            System.out.println("\n");
-            encryptedWriter.close();
+            IntStream.range(0, count).parallel().forEach(n -> {
+                int[][] generatedKey = generateInvertibleMatrix();
+                File keyFile = new File(outputDirectory, "key" + size + "-" + radix + "-" + n + ".txt");
+                writeKeyToFile(generatedKey, keyFile);
+                writeKeyToFile(ModularMatrix.inverse(generatedKey, radix), inverseKeyFile(keyFile));
+            });
+        } catch (UncheckedIOException e) {
+            e.getCause().printStackTrace();
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Generated %d key pairs in %.3f s (%.1f keys/s)%n", count, seconds, count / seconds);
+    }
+
+    private static int[][] generateInvertibleMatrix() {
+        int[][] generatedKey = null;
+        while(generatedKey == null || !ModularMatrix.isInvertible(generatedKey, radix)){
+            generatedKey = generateRandomMatrix();
+        }
+        return generatedKey;
+    }
+
+    /**
+     * The inverse key is written next to the key, named like invkey3-26.txt for key3-26.txt.
+     */
+    static File inverseKeyFile(File keyFile) {
+        return new File(keyFile.getAbsoluteFile().getParentFile(), "inv" + keyFile.getName());
+    }
+
+    static void writeKeyToFile(int[][] key, File output) {
+        try (FileWriter encryptedWriter = new FileWriter(output)) {
+            encryptedWriter.write(formatKey(key));
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
     }
 
-    private static DenseMatrix<ModuloInteger> generateRandomMatrix() {
-        ModuloInteger[][] values = new ModuloInteger[size][size];
+    static String formatKey(int[][] key) {
+        StringBuilder sb = new StringBuilder();
+        for(int a = 0; a < key.length; a++){
+            for(int b = 0; b < key[a].length; b++) {
+                if(b != 0) sb.append(' ');
+                sb.append(key[a][b]);
+            }
+            if(a != key.length - 1) sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static int[][] generateRandomMatrix() {
+        int[][] values = new int[size][size];
 
         for(int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
-                values[i][j] = ModuloInteger.valueOf(
-                        LargeInteger.valueOf(ThreadLocalRandom.current().nextInt(0, radix))
-                );
+                values[i][j] = ThreadLocalRandom.current().nextInt(0, radix);
             }
         }
 
-        return DenseMatrix.valueOf(values);
+        return values;
     }
 
     private static void verifyArguments() {
-        if(!(radix > 0 && radix <= 256) || !(size > 0 && size <= 8)) {
-            throw new IllegalArgumentException("Unexpected arguments! Radix must be between 1 and 256, block size must be between 1 and 8!");
+        if(!(radix > 1) || !(size > 0 && size <= 64 && size < radix)) {
+            throw new IllegalArgumentException("Unexpected arguments! Radix must be between 2 and 2147483647, block size must be between 1 and 64 and smaller than the radix!");
         }
+
     }
 
     private static void parseArgs(String[] args) {
         radix = Integer.parseInt(args[0]);
         size = Integer.parseInt(args[1]);
         requestedFileName = args[2];
-    }
-
-    private static boolean isInvertible(DenseMatrix<ModuloInteger> matrix) {
-        try {
-            //System.out.println(matrix.inverse().toString().replaceAll("[{]|[}]", ""));
-            DenseMatrix<ModuloInteger> first = matrix.inverse();
-            first.inverse();
-            return true;
-        } catch (ArithmeticException e) {
-            return false;
+        if (args.length == 5) {
+            count = Integer.parseInt(args[4]);
+            if (count < 1) throw new IllegalArgumentException("Unexpected arguments! --count must be at least 1!");
         }
     }
 }
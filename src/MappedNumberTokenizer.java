@@ -0,0 +1,31 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tokenizer that maps a file region window by window instead of copying it
+ * through a read buffer. All offsets are longs, so files larger than 2 GB work.
+ */
+class MappedNumberTokenizer extends NumberTokenizer {
+    static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel fileChannel;
+    private final long end;
+    private long windowStart;
+
+    MappedNumberTokenizer(FileChannel fileChannel, long start, long end) {
+        super(null, ByteBuffer.allocate(0));
+        this.fileChannel = fileChannel;
+        this.windowStart = start;
+        this.end = end;
+    }
+
+    @Override
+    boolean fill() throws IOException {
+        if (windowStart >= end) return false;
+        long length = Math.min(WINDOW_SIZE, end - windowStart);
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        windowStart += length;
+        return true;
+    }
+}
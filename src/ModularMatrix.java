@@ -0,0 +1,154 @@
+/**
+ * Square matrix arithmetic modulo a radix on plain int arrays.
+ *
+ * The radix may be composite (26, 256, ...), so elimination cannot simply divide
+ * by a pivot. Instead every column is reduced with Euclid's algorithm on whole
+ * rows, which leaves the gcd of the column as pivot. The matrix is invertible
+ * exactly when every such pivot is a unit modulo the radix.
+ */
+final class ModularMatrix {
+
+    private ModularMatrix() {
+    }
+
+    /**
+     * Returns the determinant of the matrix modulo the radix.
+     */
+    static int determinant(int[][] matrix, int radix) {
+        int size = matrix.length;
+        long[][] rows = reduced(matrix, radix);
+        long determinant = 1;
+        for (int col = 0; col < size; col++) {
+            if (eliminateBelow(rows, null, col, radix) < 0) {
+                determinant = (radix - determinant) % radix;
+            }
+            determinant = determinant * rows[col][col] % radix;
+            if (determinant == 0) return 0;
+        }
+        return (int) determinant;
+    }
+
+    static boolean isInvertible(int[][] matrix, int radix) {
+        return gcd(determinant(matrix, radix), radix) == 1;
+    }
+
+    /**
+     * Returns the inverse of the matrix modulo the radix, or null if it has none.
+     */
+    static int[][] inverse(int[][] matrix, int radix) {
+        int size = matrix.length;
+        long[][] rows = reduced(matrix, radix);
+        long[][] inverse = new long[size][size];
+        for (int i = 0; i < size; i++) inverse[i][i] = 1 % radix;
+
+        for (int col = 0; col < size; col++) {
+            eliminateBelow(rows, inverse, col, radix);
+            long pivotInverse = modInverse(rows[col][col], radix);
+            if (pivotInverse < 0) return null;
+            scaleRow(rows[col], pivotInverse, radix);
+            scaleRow(inverse[col], pivotInverse, radix);
+            for (int row = 0; row < size; row++) {
+                long factor = rows[row][col];
+                if (row == col || factor == 0) continue;
+                subtractRow(rows[row], rows[col], factor, radix);
+                subtractRow(inverse[row], inverse[col], factor, radix);
+            }
+        }
+
+        int[][] result = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) result[row][col] = (int) inverse[row][col];
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies two matrices modulo the radix.
+     */
+    static int[][] multiply(int[][] a, int[][] b, int radix) {
+        int size = a.length;
+        int[][] result = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                long sum = 0;
+                for (int k = 0; k < size; k++) {
+                    sum = (sum + (long) a[row][k] * b[k][col]) % radix;
+                }
+                result[row][col] = (int) sum;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the inverse of a modulo m, or -1 if a is not a unit.
+     */
+    static long modInverse(long a, long m) {
+        long oldR = a % m, r = m;
+        long oldS = 1, s = 0;
+        while (r != 0) {
+            long q = oldR / r;
+            long t = oldR - q * r; oldR = r; r = t;
+            t = oldS - q * s; oldS = s; s = t;
+        }
+        if (oldR != 1) return m == 1 ? 0 : -1;
+        return ((oldS % m) + m) % m;
+    }
+
+    static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Clears the column below the diagonal with Euclid's algorithm on whole rows,
+     * mirroring every row operation on {@code companion} when it is not null.
+     * Returns the pivot column, bit-inverted when an odd number of row swaps was made.
+     */
+    private static int eliminateBelow(long[][] rows, long[][] companion, int col, int radix) {
+        boolean negated = false;
+        for (int row = col + 1; row < rows.length; row++) {
+            while (rows[row][col] != 0) {
+                long q = rows[col][col] / rows[row][col];
+                if (q != 0) {
+                    subtractRow(rows[col], rows[row], q, radix);
+                    if (companion != null) subtractRow(companion[col], companion[row], q, radix);
+                }
+                swap(rows, col, row);
+                if (companion != null) swap(companion, col, row);
+                negated = !negated;
+            }
+        }
+        return negated ? ~col : col;
+    }
+
+    private static long[][] reduced(int[][] matrix, int radix) {
+        int size = matrix.length;
+        long[][] rows = new long[size][size];
+        for (int row = 0; row < size; row++) {
+            if (matrix[row].length != size) throw new IllegalArgumentException("The key matrix is not square...");
+            for (int col = 0; col < size; col++) rows[row][col] = Math.floorMod(matrix[row][col], radix);
+        }
+        return rows;
+    }
+
+    private static void subtractRow(long[] target, long[] source, long factor, int radix) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = Math.floorMod(target[i] - factor * source[i] % radix, radix);
+        }
+    }
+
+    private static void scaleRow(long[] row, long factor, int radix) {
+        for (int i = 0; i < row.length; i++) row[i] = row[i] * factor % radix;
+    }
+
+    private static void swap(long[][] rows, int a, int b) {
+        long[] t = rows[a];
+        rows[a] = rows[b];
+        rows[b] = t;
+    }
+}
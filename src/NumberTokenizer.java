@@ -0,0 +1,137 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads whitespace separated decimal numbers through one reusable buffer,
+ * parsing the digits straight into ints. In binary mode the numbers are
+ * instead read as fixed width big-endian symbols. Given a radix, numbers that
+ * are not below it are rejected, so that no kernel is applied to them.
+ */
+class NumberTokenizer {
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    ByteBuffer buffer;
+    private int symbolWidth;
+    private int radix;
+
+    NumberTokenizer(ReadableByteChannel channel) {
+        this(channel, ByteBuffer.allocate(BUFFER_SIZE));
+        this.buffer.flip();
+    }
+
+    /**
+     * Reads only the remaining bytes of {@code buffer}.
+     */
+    NumberTokenizer(ByteBuffer buffer) {
+        this(null, buffer);
+    }
+
+    NumberTokenizer(ReadableByteChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Switches to reading packed symbols of the given width instead of decimal text.
+     */
+    NumberTokenizer binary(int symbolWidth) {
+        this.symbolWidth = symbolWidth;
+        return this;
+    }
+
+    /**
+     * Rejects numbers at or above {@code radix} with an IllegalArgumentException.
+     */
+    NumberTokenizer radix(int radix) {
+        this.radix = radix;
+        return this;
+    }
+
+    /**
+     * Loads the next part of the input into the buffer.
+     * Returns false when there is nothing more to read.
+     */
+    boolean fill() throws IOException {
+        if (channel == null) return false;
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Returns the next number in the input, or -1 when the input is exhausted.
+     */
+    int next() throws IOException {
+        if (symbolWidth > 0) return nextSymbol();
+        int value = 0;
+        boolean inNumber = false;
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get();
+            if (b >= '0' && b <= '9') {
+                if (value > (Integer.MAX_VALUE - (b - '0')) / 10) {
+                    throw new NumberFormatException("Number in input file is too large");
+                }
+                value = value * 10 + (b - '0');
+                inNumber = true;
+            } else if (isSpaceOrNewLine(b)) {
+                if (inNumber) return checkRange(value);
+            } else {
+                throw new NumberFormatException("Unexpected character '" + (char) b + "' in input file");
+            }
+        }
+        return inNumber ? checkRange(value) : -1;
+    }
+
+    /**
+     * Reads up to {@code length} numbers into {@code numbers}, returning how many were read.
+     */
+    int read(int[] numbers, int offset, int length) throws IOException {
+        if (symbolWidth == 1) return readBytes(numbers, offset, length);
+        int read = 0;
+        int number;
+        while (read < length && (number = next()) != -1) numbers[offset + read++] = number;
+        return read;
+    }
+
+    private int readBytes(int[] numbers, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length && (buffer.hasRemaining() || fill())) {
+            int end = Math.min(length, read + buffer.remaining());
+            while (read < end) numbers[offset + read++] = buffer.get() & 0xFF;
+        }
+        if (radix > 0 && radix < 1 << 8) {
+            for (int i = offset; i < offset + read; i++) checkRange(numbers[i]);
+        }
+        return read;
+    }
+
+    private int nextSymbol() throws IOException {
+        int value = 0;
+        for (int i = 0; i < symbolWidth; i++) {
+            if (!buffer.hasRemaining() && !fill()) {
+                if (i == 0) return -1;
+                throw new NumberFormatException("Binary cipher file ends in the middle of a symbol");
+            }
+            value = value << 8 | (buffer.get() & 0xFF);
+        }
+        if (value < 0) throw new NumberFormatException("Symbol in binary cipher file is too large");
+        return checkRange(value);
+    }
+
+    private int checkRange(int value) {
+        if (radix > 0 && value >= radix) {
+            throw new IllegalArgumentException("The number " + value + " in the input is not below the radix " + radix + ".");
+        }
+        return value;
+    }
+
+    static boolean isSpaceOrNewLine(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+}
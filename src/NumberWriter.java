@@ -0,0 +1,118 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes numbers as space separated decimal text through one reusable buffer,
+ * formatting the digits directly into bytes.
+ */
+class NumberWriter implements Closeable {
+    static final int BUFFER_SIZE = 1 << 16;
+
+    final OutputStream out;
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    int position;
+    private boolean first = true;
+    private long bytesWritten;
+    private BlockIndex index;
+    private long numbersWritten;
+
+    NumberWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes one number. The kernels only produce numbers below the radix, so
+     * a negative number here is a bug rather than bad input.
+     */
+    void write(int number) throws IOException {
+        assert number >= 0 : "Cannot write the negative number " + number;
+        if (position > BUFFER_SIZE - 12) flush();
+        if (!first) buffer[position++] = ' ';
+        first = false;
+        if (number == 0) {
+            buffer[position++] = '0';
+            return;
+        }
+        int start = position;
+        while (number > 0) {
+            buffer[position++] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+
+    void write(int[] numbers, int from, int to) throws IOException {
+        if (index == null) {
+            for (int i = from; i < to; i++) write(numbers[i]);
+            return;
+        }
+        long stride = index.stride();
+        for (int i = from; i < to; i++) {
+            if (numbersWritten++ % stride == 0) index.add(bytesWritten());
+            write(numbers[i]);
+        }
+    }
+
+    /**
+     * Records the offset of every indexed block written from now on with
+     * {@link #write(int[], int, int)} into {@code index}.
+     */
+    void indexBlocks(BlockIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Appends numbers that were already formatted by another NumberWriter,
+     * adding the separator in front of them when needed.
+     */
+    void writeFormatted(byte[] formatted, int length) throws IOException {
+        if (length == 0) return;
+        if (!first && separated()) {
+            if (position == BUFFER_SIZE) flush();
+            buffer[position++] = ' ';
+        }
+        first = false;
+        if (length > BUFFER_SIZE - position) {
+            flush();
+            out.write(formatted, 0, length);
+            bytesWritten += length;
+        } else {
+            System.arraycopy(formatted, 0, buffer, position, length);
+            position += length;
+        }
+    }
+
+    /**
+     * Creates a writer of the same format for a part of the output that will
+     * later be appended with {@link #writeFormatted}.
+     */
+    NumberWriter newPartWriter(OutputStream partOut) {
+        return new NumberWriter(partOut);
+    }
+
+    boolean separated() {
+        return true;
+    }
+
+    /** Number of bytes handed to the output so far, including buffered ones. */
+    long bytesWritten() {
+        return bytesWritten + position;
+    }
+
+    void flush() throws IOException {
+        out.write(buffer, 0, position);
+        bytesWritten += position;
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
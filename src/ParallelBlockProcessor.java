@@ -0,0 +1,202 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Splits a file of numbers into chunks that start on token boundaries and
+ * transforms the blocks of every chunk on a ForkJoinPool. The results are
+ * written back in file order.
+ *
+ * A block belongs to the chunk its first number lies in, so a chunk task may
+ * read a few numbers past the end of its chunk to complete its last block.
+ * Binary cipher files have fixed width symbols, so their chunks are simply
+ * aligned to whole symbols after the header.
+ */
+class ParallelBlockProcessor {
+    static final long TARGET_CHUNK_SIZE = 8L << 20;
+    static final int BATCH_BLOCKS = 4096;
+
+    private final FileChannel channel;
+    private final int blocksize;
+    private final int threads;
+    private final BlockKernel kernel;
+    private final BinaryCipherFormat inputFormat;
+    private final CipherStats stats;
+    private long[] chunkStarts;
+    private long[] chunkFirstNumbers;
+
+    ParallelBlockProcessor(FileChannel channel, int threads, BlockKernel kernel, BinaryCipherFormat inputFormat, CipherStats stats) {
+        this.channel = channel;
+        this.stats = stats;
+        this.blocksize = kernel.blocksize();
+        this.threads = threads;
+        this.kernel = kernel;
+        this.inputFormat = inputFormat;
+    }
+
+    /**
+     * Splits the file into chunks and counts the numbers in each of them in parallel.
+     * Returns the total amount of numbers in the file.
+     */
+    long countNumbers(ForkJoinPool pool) throws IOException {
+        long fileSize = channel.size();
+        int chunks = (int) Math.max(threads * 4L, Math.min(Integer.MAX_VALUE - 1, fileSize / TARGET_CHUNK_SIZE));
+        chunkStarts = new long[chunks + 1];
+        chunkStarts[0] = inputFormat == null ? 0 : BinaryCipherFormat.HEADER_SIZE;
+        for (int i = 1; i < chunks; i++) {
+            chunkStarts[i] = Math.max(chunkStarts[i - 1], align(fileSize / chunks * i));
+        }
+        chunkStarts[chunks] = fileSize;
+
+        List<ForkJoinTask<Long>> counts = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            long start = chunkStarts[i];
+            long end = chunkStarts[i + 1];
+            counts.add(pool.submit(() -> countNumbers(start, end)));
+        }
+        chunkFirstNumbers = new long[chunks + 1];
+        for (int i = 0; i < chunks; i++) {
+            chunkFirstNumbers[i + 1] = chunkFirstNumbers[i] + join(counts.get(i));
+        }
+        return chunkFirstNumbers[chunks];
+    }
+
+    /**
+     * Transforms the first {@code blocks} blocks of the file and writes them in order.
+     * At most a few chunks per thread are held in memory at any time.
+     */
+    void process(ForkJoinPool pool, long blocks, NumberWriter writer) throws IOException {
+        ArrayDeque<ForkJoinTask<ByteArrayOutputStream>> inFlight = new ArrayDeque<>();
+        int chunks = chunkStarts.length - 1;
+        for (int i = 0; i < chunks; i++) {
+            long firstBlock = ceilDiv(chunkFirstNumbers[i], blocksize);
+            long endBlock = Math.min(blocks, ceilDiv(chunkFirstNumbers[i + 1], blocksize));
+            if (firstBlock >= endBlock) continue;
+            int chunk = i;
+            inFlight.add(pool.submit(() -> processChunk(chunk, firstBlock, endBlock, writer)));
+            if (inFlight.size() >= threads * 2) writeResult(inFlight.poll(), writer);
+        }
+        while (!inFlight.isEmpty()) writeResult(inFlight.poll(), writer);
+    }
+
+    /**
+     * Reads {@code length} numbers starting at number index {@code firstNumber}.
+     * Used by the engines for the final block, which needs padding handled sequentially.
+     */
+    int[] readNumbers(long firstNumber, int length) throws IOException {
+        int chunk = 0;
+        while (chunk < chunkStarts.length - 2 && chunkFirstNumbers[chunk + 1] <= firstNumber) chunk++;
+        NumberTokenizer tokenizer = tokenizer(chunkStarts[chunk], channel.size());
+        for (long skip = firstNumber - chunkFirstNumbers[chunk]; skip > 0; skip--) tokenizer.next();
+        int[] numbers = new int[length];
+        for (int i = 0; i < length; i++) numbers[i] = tokenizer.next();
+        return numbers;
+    }
+
+    private ByteArrayOutputStream processChunk(int chunk, long firstBlock, long endBlock, NumberWriter writer) {
+        try {
+            NumberTokenizer tokenizer = tokenizer(chunkStarts[chunk], channel.size());
+            for (long skip = firstBlock * blocksize - chunkFirstNumbers[chunk]; skip > 0; skip--) tokenizer.next();
+            ByteArrayOutputStream result = new ByteArrayOutputStream(
+                    (int) Math.min(chunkStarts[chunk + 1] - chunkStarts[chunk] + 64, Integer.MAX_VALUE - 8));
+            NumberWriter chunkWriter = writer.newPartWriter(result);
+            int[] loadedNumbers = new int[BATCH_BLOCKS * blocksize];
+            int[] transformed = new int[BATCH_BLOCKS * blocksize];
+            for (long block = firstBlock; block < endBlock; ) {
+                int batch = (int) Math.min(BATCH_BLOCKS, endBlock - block);
+                long start = stats.start();
+                tokenizer.read(loadedNumbers, 0, batch * blocksize);
+                stats.stop(CipherStats.Phase.TOKENIZE, start);
+                start = stats.start();
+                kernel.apply(loadedNumbers, transformed, batch);
+                stats.stop(CipherStats.Phase.KERNEL, start);
+                start = stats.start();
+                chunkWriter.write(transformed, 0, batch * blocksize);
+                stats.stop(CipherStats.Phase.WRITE, start);
+                block += batch;
+            }
+            chunkWriter.close();
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long countNumbers(long start, long end) {
+        if (inputFormat != null) return (end - start) / inputFormat.symbolWidth;
+        try {
+            long started = stats.start();
+            NumberTokenizer tokenizer = tokenizer(start, end);
+            long count = 0;
+            while (tokenizer.next() != -1) count++;
+            stats.stop(CipherStats.Phase.TOKENIZE, started);
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private NumberTokenizer tokenizer(long start, long end) {
+        NumberTokenizer tokenizer = new MappedNumberTokenizer(channel, start, end).radix(kernel.radix());
+        return inputFormat == null ? tokenizer : tokenizer.binary(inputFormat.symbolWidth);
+    }
+
+    /**
+     * Moves a position forward to the first byte that follows whitespace,
+     * so a chunk never starts in the middle of a number.
+     */
+    private long align(long position) throws IOException {
+        if (inputFormat != null) {
+            long dataStart = BinaryCipherFormat.HEADER_SIZE;
+            if (position <= dataStart) return dataStart;
+            return dataStart + (position - dataStart) / inputFormat.symbolWidth * inputFormat.symbolWidth;
+        }
+        if (position <= 0) return 0;
+        ByteBuffer probe = ByteBuffer.allocate(64);
+        long current = position - 1;
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, current);
+            if (read <= 0) return channel.size();
+            for (int i = 0; i < read; i++) {
+                if (NumberTokenizer.isSpaceOrNewLine(probe.get(i))) return current + i + 1;
+            }
+            current += read;
+        }
+    }
+
+    private void writeResult(ForkJoinTask<ByteArrayOutputStream> task, NumberWriter writer) throws IOException {
+        ByteArrayOutputStream result = join(task);
+        long start = stats.start();
+        writer.writeFormatted(result.toByteArray(), result.size());
+        stats.stop(CipherStats.Phase.WRITE, start);
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // ForkJoinTask may hand back a copy of the worker's exception that wraps the original
+            if (cause.getCause() != null && cause.getCause().getClass() == cause.getClass()) cause = cause.getCause();
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return (a + b - 1) / b;
+    }
+}